@@ -0,0 +1,51 @@
+package bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Автоматическое определение сдвига на английском, русском и смешанном тексте
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnalyzerBenchmark {
+
+    @Param({"english", "russian", "mixed"})
+    public String language;
+
+    @Param({"256", "65536"})
+    public int size;
+
+    private String ciphertext;
+
+    @Setup
+    public void setUp() {
+        ciphertext = App.encrypt(BenchmarkData.text(language, size), 7);
+    }
+
+    @Benchmark
+    public int findBestShift() {
+        return App.findBestShift(ciphertext);
+    }
+
+    @Benchmark
+    public List<?> getAllDecryptions() {
+        return App.getAllDecryptions(ciphertext);
+    }
+}
@@ -0,0 +1,150 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+
+/**
+ * Доступ к классам приложения из пакета bench.
+ * Приложение находится в пакете по умолчанию, который нельзя импортировать,
+ * а JMH не допускает бенчмарки в пакете по умолчанию. Поэтому вызовы идут
+ * через статические константы MethodHandle, которые JIT встраивает так же,
+ * как прямые вызовы.
+ */
+final class App {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    private static final MethodHandle ENCRYPT = findStatic("CaesarCipher", "encrypt",
+            MethodType.methodType(String.class, String.class, int.class));
+    private static final MethodHandle FOR_SHIFT = findStatic("CipherEngine", "forShift",
+            MethodType.methodType(type("CipherEngine"), int.class)).asType(
+            MethodType.methodType(Object.class, int.class));
+    private static final MethodHandle APPLY = findVirtual("CipherEngine", "apply",
+            MethodType.methodType(void.class, char[].class, int.class, char[].class, int.class, int.class)).asType(
+            MethodType.methodType(void.class, Object.class, char[].class, int.class, char[].class, int.class, int.class));
+    private static final MethodHandle FIND_BEST_SHIFT = findStatic("Analyzer", "findBestShift",
+            MethodType.methodType(int.class, String.class));
+    private static final MethodHandle GET_ALL_DECRYPTIONS = findStatic("Analyzer", "getAllDecryptions",
+            MethodType.methodType(List.class, String.class));
+    private static final MethodHandle EVALUATE = findStatic("ExpressionEvaluator", "evaluate",
+            MethodType.methodType(double.class, String.class));
+    private static final MethodHandle COMPILE = findStatic("ExpressionEvaluator", "compile",
+            MethodType.methodType(type("CompiledExpression"), String.class)).asType(
+            MethodType.methodType(Object.class, String.class));
+    private static final MethodHandle EVALUATE_COMPILED = findVirtual("CompiledExpression", "evaluate",
+            MethodType.methodType(double.class)).asType(
+            MethodType.methodType(double.class, Object.class));
+    private static final MethodHandle READ_TEXT_FROM_FILE = findStatic("FileHandler", "readTextFromFile",
+            MethodType.methodType(String.class, String.class));
+
+    private App() {
+    }
+
+    static String encrypt(String text, int shift) {
+        try {
+            return (String) ENCRYPT.invokeExact(text, shift);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static Object cipherEngine(int shift) {
+        try {
+            return (Object) FOR_SHIFT.invokeExact(shift);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void apply(Object engine, char[] src, int srcOffset, char[] dst, int dstOffset, int length) {
+        try {
+            APPLY.invokeExact(engine, src, srcOffset, dst, dstOffset, length);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static int findBestShift(String ciphertext) {
+        try {
+            return (int) FIND_BEST_SHIFT.invokeExact(ciphertext);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static List<?> getAllDecryptions(String ciphertext) {
+        try {
+            return (List<?>) GET_ALL_DECRYPTIONS.invokeExact(ciphertext);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static double evaluate(String expression) {
+        try {
+            return (double) EVALUATE.invokeExact(expression);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static Object compile(String expression) {
+        try {
+            return (Object) COMPILE.invokeExact(expression);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static double evaluateCompiled(Object compiled) {
+        try {
+            return (double) EVALUATE_COMPILED.invokeExact(compiled);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static String readTextFromFile(String filePath) {
+        try {
+            return (String) READ_TEXT_FROM_FILE.invokeExact(filePath);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    private static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Application class not found: " + name, e);
+        }
+    }
+
+    private static MethodHandle findStatic(String className, String name, MethodType type) {
+        try {
+            return LOOKUP.findStatic(type(className), name, type);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Method not found: " + className + "." + name, e);
+        }
+    }
+
+    private static MethodHandle findVirtual(String className, String name, MethodType type) {
+        try {
+            return LOOKUP.findVirtual(type(className), name, type);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Method not found: " + className + "." + name, e);
+        }
+    }
+
+    private static RuntimeException propagate(Throwable e) {
+        if (e instanceof RuntimeException) {
+            return (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        return new IllegalStateException(e);
+    }
+}
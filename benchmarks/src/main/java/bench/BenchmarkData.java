@@ -0,0 +1,72 @@
+package bench;
+
+import java.util.Random;
+
+/**
+ * Тестовые тексты и выражения для бенчмарков
+ */
+final class BenchmarkData {
+
+    private static final String[] ENGLISH_WORDS = (
+            "the quick brown fox jumps over lazy dog this is a test message for caesar cipher "
+            + "encryption and decryption text contains common english words and phrases that "
+            + "we use to measure how fast the analyzer finds the right shift in large inputs").split(" ");
+
+    private static final String[] RUSSIAN_WORDS = (
+            "быстрая коричневая лиса прыгает через ленивую собаку это тестовое сообщение для "
+            + "шифрования и дешифрования шифром цезаря текст содержит обычные русские слова и "
+            + "фразы которые помогают измерить скорость поиска правильного сдвига").split(" ");
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Текст заданной длины на английском, русском или обоих языках
+     */
+    static String text(String language, int length) {
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder(length + 32);
+        while (text.length() < length) {
+            String[] words;
+            switch (language) {
+                case "english":
+                    words = ENGLISH_WORDS;
+                    break;
+                case "russian":
+                    words = RUSSIAN_WORDS;
+                    break;
+                case "mixed":
+                    words = random.nextBoolean() ? ENGLISH_WORDS : RUSSIAN_WORDS;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown language: " + language);
+            }
+            String word = words[random.nextInt(words.length)];
+            if (random.nextInt(8) == 0) {
+                word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+            }
+            text.append(word).append(random.nextInt(12) == 0 ? ". " : " ");
+        }
+        text.setLength(length);
+        return text.toString();
+    }
+
+    /**
+     * Простое или глубоко вложенное выражение
+     */
+    static String expression(String shape) {
+        switch (shape) {
+            case "simple":
+                return "2 + 3 * 4 - 10 / 5";
+            case "nested": {
+                StringBuilder expression = new StringBuilder("1");
+                for (int i = 2; i <= 40; i++) {
+                    expression.insert(0, '(').append(i % 2 == 0 ? " + " : " * ").append(i).append(')');
+                }
+                return expression.toString();
+            }
+            default:
+                throw new IllegalArgumentException("Unknown expression shape: " + shape);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Шифрование текстов разной длины и на разных алфавитах
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CipherBenchmark {
+
+    @Param({"1024", "65536", "1048576"})
+    public int size;
+
+    @Param({"english", "russian", "mixed"})
+    public String alphabet;
+
+    private String text;
+    private char[] source;
+    private char[] target;
+    private Object engine;
+
+    @Setup
+    public void setUp() {
+        text = BenchmarkData.text(alphabet, size);
+        source = text.toCharArray();
+        target = new char[source.length];
+        engine = App.cipherEngine(3);
+    }
+
+    @Benchmark
+    public String encrypt() {
+        return App.encrypt(text, 3);
+    }
+
+    @Benchmark
+    public char[] engineIntoBuffer() {
+        App.apply(engine, source, 0, target, 0, source.length);
+        return target;
+    }
+}
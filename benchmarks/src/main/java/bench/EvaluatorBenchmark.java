@@ -0,0 +1,49 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Вычисление простых и глубоко вложенных выражений
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluatorBenchmark {
+
+    @Param({"simple", "nested"})
+    public String shape;
+
+    private String expression;
+    private Object compiled;
+
+    @Setup
+    public void setUp() {
+        expression = BenchmarkData.expression(shape);
+        compiled = App.compile(expression);
+    }
+
+    @Benchmark
+    public double evaluate() {
+        return App.evaluate(expression);
+    }
+
+    @Benchmark
+    public double evaluateCompiled() {
+        return App.evaluateCompiled(compiled);
+    }
+}
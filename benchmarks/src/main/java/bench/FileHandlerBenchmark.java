@@ -0,0 +1,63 @@
+package bench;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Чтение файла с определением кодировки
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileHandlerBenchmark {
+
+    @Param({"UTF-8", "UTF-16", "windows-1251", "windows-1252"})
+    public String charset;
+
+    @Param({"1048576"})
+    public int size;
+
+    private Path file;
+
+    @Setup
+    public void setUp() throws IOException {
+        // В CP1252 нет кириллицы, поэтому для нее берется английский текст
+        String language = charset.equals("windows-1252") ? "english" : "russian";
+        file = Files.createTempFile("bench-", ".txt");
+        Files.write(file, BenchmarkData.text(language, size).getBytes(Charset.forName(charset)));
+    }
+
+    @TearDown
+    public void tearDown() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Benchmark
+    public String readTextFromFile() {
+        return App.readTextFromFile(file.toString());
+    }
+}
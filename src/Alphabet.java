@@ -0,0 +1,237 @@
+import java.util.Arrays;
+
+/**
+ * Алфавит шифра Цезаря: буквы в порядке сдвига, пары регистров
+ * и (необязательно) эталонные частоты букв языка.
+ * Дополнительные буквы (например, 'ё' в русском) принадлежат языку,
+ * но не входят в кольцо сдвига и не меняются при шифровании.
+ *
+ * Номер буквы по символу определяется за O(1) по таблице,
+ * построенной для диапазона символов алфавита.
+ */
+public final class Alphabet {
+
+    public static final Alphabet ENGLISH = new Alphabet("english",
+            "abcdefghijklmnopqrstuvwxyz",
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZ",
+            "",
+            new double[] {
+                8.12, 1.49, 2.78, 4.25, 12.02, 2.23, 2.02, 6.09, 6.97, 0.15, 0.77, 4.03, 2.41,
+                6.75, 7.51, 1.93, 0.10, 5.99, 6.33, 9.06, 2.76, 0.98, 2.36, 0.15, 1.97, 0.07
+            },
+            new double[0]);
+
+    public static final Alphabet RUSSIAN = new Alphabet("russian",
+            "абвгдежзийклмнопрстуфхцчшщъыьэюя",
+            "АБВГДЕЖЗИЙКЛМНОПРСТУФХЦЧШЩЪЫЬЭЮЯ",
+            "ё",
+            new double[] {
+                8.01, 1.59, 4.54, 1.70, 2.98, 8.45, 0.94, 1.65, 7.35, 1.21, 3.49, 4.40, 3.21, 6.70, 10.97, 2.81,
+                4.73, 5.47, 6.26, 2.62, 0.26, 0.97, 0.48, 1.44, 0.73, 0.36, 0.04, 1.90, 1.74, 0.32, 0.64, 2.01
+            },
+            new double[] {0.04});
+
+    // Частоты украинского, немецкого и греческого - по языковым профилям Википедии
+    public static final Alphabet UKRAINIAN = new Alphabet("ukrainian",
+            "абвгґдеєжзиіїйклмнопрстуфхцчшщьюя",
+            "АБВГҐДЕЄЖЗИІЇЙКЛМНОПРСТУФХЦЧШЩЬЮЯ",
+            "",
+            new double[] {
+                8.66, 1.25, 4.12, 1.63, 0.04, 3.33, 5.48, 0.58, 0.67, 1.81, 5.17, 7.15, 0.93, 1.19, 3.87, 3.41, 2.76,
+                8.84, 8.51, 2.60, 5.35, 4.44, 5.38, 3.25, 0.69, 1.07, 1.32, 1.10, 0.46, 0.23, 2.12, 0.83, 1.77
+            },
+            new double[0]);
+
+    public static final Alphabet GERMAN = new Alphabet("german",
+            "abcdefghijklmnopqrstuvwxyzäöüß",
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZÄÖÜẞ",
+            "",
+            new double[] {
+                6.26, 1.96, 2.88, 4.88, 15.03, 1.56, 2.71, 3.89, 8.85, 0.28, 1.58, 3.93, 2.78, 9.28, 3.31,
+                1.25, 0.04, 7.70, 6.84, 6.37, 3.62, 0.97, 1.21, 0.09, 0.34, 1.08, 0.41, 0.30, 0.47, 0.12
+            },
+            new double[0]);
+
+    public static final Alphabet GREEK = new Alphabet("greek",
+            "αβγδεζηθικλμνξοπρστυφχψω",
+            "ΑΒΓΔΕΖΗΘΙΚΛΜΝΞΟΠΡΣΤΥΦΧΨΩ",
+            "ςάέήίόύώϊϋΐΰ",
+            new double[] {
+                9.57, 0.78, 1.84, 1.61, 5.73, 0.35, 3.90, 0.96, 6.81, 4.33, 2.99, 3.43,
+                6.11, 0.27, 8.80, 3.44, 4.57, 4.12, 8.07, 3.40, 0.81, 1.06, 0.07, 1.37
+            },
+            new double[] {3.96, 1.80, 1.55, 1.63, 2.67, 2.25, 1.01, 0.66, 0.06, 0.00, 0.02, 0.00});
+
+    // Признак символа, не принадлежащего алфавиту
+    private static final short NOT_A_LETTER = -1;
+
+    private final String name;
+    private final String lower;
+    private final String upper;
+    private final String extraLetters;
+    private final double[] frequencies;
+    private final double[] extraFrequencies;
+
+    // Номер буквы для символов firstChar..firstChar+indexes.length-1
+    private final char firstChar;
+    private final short[] indexes;
+
+    /**
+     * Создание алфавита.
+     * lower и upper - буквы кольца сдвига в двух регистрах (одинаковой длины),
+     * extraLetters - буквы языка вне кольца (строчные), frequencies и
+     * extraFrequencies - частоты в процентах или null, если они неизвестны.
+     */
+    public Alphabet(String name, String lower, String upper, String extraLetters,
+                    double[] frequencies, double[] extraFrequencies) {
+        if (lower.isEmpty() || lower.length() != upper.length()) {
+            throw new IllegalArgumentException("Lower and upper case letters must match: " + name);
+        }
+        if (lower.length() + extraLetters.length() > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Alphabet is too large: " + name);
+        }
+        if (frequencies != null && frequencies.length != lower.length()) {
+            throw new IllegalArgumentException("Frequencies must match letters: " + name);
+        }
+        if (frequencies != null && (extraFrequencies == null || extraFrequencies.length != extraLetters.length())) {
+            throw new IllegalArgumentException("Frequencies must match extra letters: " + name);
+        }
+        this.name = name;
+        this.lower = lower;
+        this.upper = upper;
+        this.extraLetters = extraLetters;
+        this.frequencies = frequencies == null ? null : frequencies.clone();
+        this.extraFrequencies = frequencies == null ? null : extraFrequencies.clone();
+
+        String all = lower + upper + extraLetters;
+        char min = Character.MAX_VALUE;
+        char max = 0;
+        for (int i = 0; i < all.length(); i++) {
+            char c = all.charAt(i);
+            char upperCase = Character.toUpperCase(c);
+            min = (char) Math.min(min, Math.min(c, upperCase));
+            max = (char) Math.max(max, Math.max(c, upperCase));
+        }
+        this.firstChar = min;
+        this.indexes = new short[max - min + 1];
+        Arrays.fill(indexes, NOT_A_LETTER);
+        for (int i = 0; i < lower.length(); i++) {
+            define(lower.charAt(i), i);
+            define(upper.charAt(i), i);
+        }
+        for (int i = 0; i < extraLetters.length(); i++) {
+            char extra = extraLetters.charAt(i);
+            define(extra, lower.length() + i);
+            // Заглавная форма может совпадать с буквой кольца (у 'ς' это 'Σ')
+            char extraUpper = Character.toUpperCase(extra);
+            if (extraUpper != extra && indexOf(extraUpper) == NOT_A_LETTER) {
+                define(extraUpper, lower.length() + i);
+            }
+        }
+    }
+
+    private void define(char c, int index) {
+        if (indexes[c - firstChar] != NOT_A_LETTER) {
+            throw new IllegalArgumentException("Duplicate letter '" + c + "' in alphabet: " + name);
+        }
+        indexes[c - firstChar] = (short) index;
+    }
+
+    /**
+     * Имя алфавита (совпадает с названием языка в анализаторе)
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Количество букв в кольце сдвига
+     */
+    public int size() {
+        return lower.length();
+    }
+
+    /**
+     * Количество букв вместе с дополнительными
+     */
+    public int letterCount() {
+        return lower.length() + extraLetters.length();
+    }
+
+    /**
+     * Номер буквы: 0..size()-1 для букв кольца, size()..letterCount()-1
+     * для дополнительных букв, -1 для прочих символов
+     */
+    public int indexOf(char c) {
+        int offset = c - firstChar;
+        return offset >= 0 && offset < indexes.length ? indexes[offset] : NOT_A_LETTER;
+    }
+
+    /**
+     * Строчная буква кольца по номеру
+     */
+    public char lower(int index) {
+        return lower.charAt(index);
+    }
+
+    /**
+     * Заглавная буква кольца по номеру
+     */
+    public char upper(int index) {
+        return upper.charAt(index);
+    }
+
+    /**
+     * Строчные буквы кольца в порядке номеров
+     */
+    public String lowerLetters() {
+        return lower;
+    }
+
+    /**
+     * Заглавные буквы кольца в порядке номеров
+     */
+    public String upperLetters() {
+        return upper;
+    }
+
+    /**
+     * Дополнительные буквы (строчные) в порядке номеров после size()
+     */
+    public String extraLetters() {
+        return extraLetters;
+    }
+
+    /**
+     * Есть ли эталонные частоты букв
+     */
+    public boolean hasFrequencies() {
+        return frequencies != null;
+    }
+
+    /**
+     * Частота буквы в процентах по номеру (включая дополнительные буквы)
+     */
+    public double frequency(int index) {
+        if (frequencies == null) {
+            throw new IllegalStateException("No letter frequencies for alphabet: " + name);
+        }
+        return index < frequencies.length ? frequencies[index] : extraFrequencies[index - frequencies.length];
+    }
+
+    /**
+     * Первый и последний символ таблицы номеров (для построения общих таблиц)
+     */
+    char firstChar() {
+        return firstChar;
+    }
+
+    char lastChar() {
+        return (char) (firstChar + indexes.length - 1);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,61 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Реестр алфавитов по имени.
+ * Встроенные алфавиты регистрируются при загрузке класса;
+ * новый язык добавляется вызовом register.
+ */
+public final class AlphabetRegistry {
+
+    private static final Map<String, Alphabet> ALPHABETS = new LinkedHashMap<>();
+
+    static {
+        register(Alphabet.ENGLISH);
+        register(Alphabet.RUSSIAN);
+        register(Alphabet.UKRAINIAN);
+        register(Alphabet.GERMAN);
+        register(Alphabet.GREEK);
+    }
+
+    private AlphabetRegistry() {
+    }
+
+    /**
+     * Регистрация алфавита; имя должно быть уникальным
+     */
+    public static synchronized void register(Alphabet alphabet) {
+        if (ALPHABETS.containsKey(alphabet.name())) {
+            throw new IllegalArgumentException("Alphabet is already registered: " + alphabet.name());
+        }
+        ALPHABETS.put(alphabet.name(), alphabet);
+    }
+
+    /**
+     * Алфавит по имени
+     */
+    public static synchronized Alphabet get(String name) {
+        Alphabet alphabet = ALPHABETS.get(name);
+        if (alphabet == null) {
+            throw new IllegalArgumentException("Unknown alphabet: " + name);
+        }
+        return alphabet;
+    }
+
+    /**
+     * Проверка, зарегистрирован ли алфавит
+     */
+    public static synchronized boolean contains(String name) {
+        return ALPHABETS.containsKey(name);
+    }
+
+    /**
+     * Все зарегистрированные алфавиты в порядке регистрации
+     */
+    public static synchronized List<Alphabet> all() {
+        return Collections.unmodifiableList(new ArrayList<>(ALPHABETS.values()));
+    }
+}
@@ -0,0 +1,179 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Набор непересекающихся алфавитов, с которыми одновременно работают шифр
+ * и анализатор (по умолчанию английский и русский).
+ * Для всего набора строится одна таблица кодов символов, поэтому на каждый
+ * символ приходится одна проверка диапазона и одно чтение из массива
+ * независимо от количества алфавитов.
+ */
+public final class AlphabetSet {
+
+    public static final AlphabetSet DEFAULT = of(Alphabet.ENGLISH, Alphabet.RUSSIAN);
+
+    // Код символа: номер алфавита в наборе * 256 + номер буквы в алфавите
+    static final int CODE_SHIFT = 8;
+    static final int LETTER_MASK = (1 << CODE_SHIFT) - 1;
+    private static final int NOT_A_LETTER = -1;
+
+    // Наибольший период, для которого кэшируются движки шифра
+    private static final int MAX_CACHED_PERIOD = 1 << 16;
+
+    private final List<Alphabet> alphabets;
+    private final char firstChar;
+    private final int[] codes;
+    private final int period;
+
+    // Движки шифра по сдвигу, создаются по мере необходимости
+    private final CipherEngine[] engines;
+
+    private AlphabetSet(List<Alphabet> alphabets) {
+        this.alphabets = alphabets;
+
+        char min = Character.MAX_VALUE;
+        char max = 0;
+        long period = 1;
+        for (Alphabet alphabet : alphabets) {
+            min = (char) Math.min(min, alphabet.firstChar());
+            max = (char) Math.max(max, alphabet.lastChar());
+            period = lcm(period, alphabet.size());
+        }
+        this.firstChar = min;
+        this.codes = new int[max - min + 1];
+        Arrays.fill(codes, NOT_A_LETTER);
+        for (int a = 0; a < alphabets.size(); a++) {
+            Alphabet alphabet = alphabets.get(a);
+            for (int c = alphabet.firstChar(); c <= alphabet.lastChar(); c++) {
+                int index = alphabet.indexOf((char) c);
+                if (index < 0) {
+                    continue;
+                }
+                if (codes[c - min] != NOT_A_LETTER) {
+                    throw new IllegalArgumentException("Alphabets " + alphabets.get(codes[c - min] >>> CODE_SHIFT)
+                            + " and " + alphabet + " share letter '" + (char) c + "'");
+                }
+                codes[c - min] = (a << CODE_SHIFT) | index;
+            }
+        }
+        if (period > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Shift period is too large for alphabets: " + alphabets);
+        }
+        this.period = (int) period;
+        this.engines = period <= MAX_CACHED_PERIOD ? new CipherEngine[(int) period] : null;
+    }
+
+    /**
+     * Набор из заданных алфавитов; алфавиты не должны иметь общих букв
+     */
+    public static AlphabetSet of(Alphabet... alphabets) {
+        if (alphabets.length == 0) {
+            throw new IllegalArgumentException("Alphabet set is empty");
+        }
+        if (alphabets.length > 1 << (Integer.SIZE - CODE_SHIFT - 1)) {
+            throw new IllegalArgumentException("Too many alphabets: " + alphabets.length);
+        }
+        return new AlphabetSet(Collections.unmodifiableList(new ArrayList<>(Arrays.asList(alphabets))));
+    }
+
+    /**
+     * Набор из зарегистрированных алфавитов по именам
+     */
+    public static AlphabetSet of(String... names) {
+        Alphabet[] alphabets = new Alphabet[names.length];
+        for (int i = 0; i < names.length; i++) {
+            alphabets[i] = AlphabetRegistry.get(names[i]);
+        }
+        return of(alphabets);
+    }
+
+    /**
+     * Алфавиты набора в порядке добавления
+     */
+    public List<Alphabet> alphabets() {
+        return alphabets;
+    }
+
+    /**
+     * Количество алфавитов
+     */
+    public int size() {
+        return alphabets.size();
+    }
+
+    /**
+     * Алфавит по номеру в наборе
+     */
+    public Alphabet get(int index) {
+        return alphabets.get(index);
+    }
+
+    /**
+     * Номер алфавита с заданным именем или -1
+     */
+    public int indexOf(String name) {
+        for (int i = 0; i < alphabets.size(); i++) {
+            if (alphabets.get(i).name().equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Период сдвигов: наименьшее общее кратное размеров алфавитов
+     */
+    public int period() {
+        return period;
+    }
+
+    /**
+     * Код символа (номер алфавита и номер буквы, см. CODE_SHIFT) или -1
+     */
+    int code(char c) {
+        int offset = c - firstChar;
+        return offset >= 0 && offset < codes.length ? codes[offset] : NOT_A_LETTER;
+    }
+
+    char firstChar() {
+        return firstChar;
+    }
+
+    int range() {
+        return codes.length;
+    }
+
+    /**
+     * Движок шифра для нормализованного сдвига 0..period-1
+     */
+    CipherEngine engine(int shift) {
+        if (engines == null) {
+            return CipherEngine.build(this, shift);
+        }
+        CipherEngine engine = engines[shift];
+        if (engine == null) {
+            // Гонка потоков безопасна: движок неизменяем, лишняя копия будет отброшена
+            engine = CipherEngine.build(this, shift);
+            engines[shift] = engine;
+        }
+        return engine;
+    }
+
+    private static long lcm(long a, long b) {
+        long x = a;
+        long y = b;
+        while (y != 0) {
+            long t = x % y;
+            x = y;
+            y = t;
+        }
+        return a / x * b;
+    }
+
+    @Override
+    public String toString() {
+        return alphabets.toString();
+    }
+}
@@ -1,281 +1,190 @@
 import java.util.*;
+import java.util.stream.*;
 
 public class Analyzer {
     
-    // Частоты букв в английском языке (в процентах)
-    private static final Map<Character, Double> ENGLISH_FREQUENCIES = createEnglishFrequencies();
+    // Кэш ранжирований повторяющихся шифртекстов (null - кэш выключен)
+    private static volatile ShiftCache resultCache;
     
-    // Частоты букв в русском языке (в процентах)
-    private static final Map<Character, Double> RUSSIAN_FREQUENCIES = createRussianFrequencies();
-    
-    // Наиболее частые биграммы (пары букв)
-    private static final Set<String> ENGLISH_BIGRAMS = Set.of(
-        "th", "he", "in", "er", "an", "re", "ed", "nd", "on", "en"
-    );
-    
-    private static final Set<String> RUSSIAN_BIGRAMS = Set.of(
-        "ст", "но", "то", "на", "ен", "ра", "во", "ко", "ро", "ер"
-    );
-    
-    // Наиболее частые триграммы (тройки букв)
-    private static final Set<String> ENGLISH_TRIGRAMS = Set.of(
-        "the", "and", "ing", "her", "hat", "his", "tha", "ere", "for", "ent"
-    );
-    
-    private static final Set<String> RUSSIAN_TRIGRAMS = Set.of(
-        "что", "это", "как", "все", "для", "его", "она", "они", "при", "или"
-    );
-    
-    private static Map<Character, Double> createEnglishFrequencies() {
-        Map<Character, Double> frequencies = new HashMap<>();
-        frequencies.put('a', 8.12);
-        frequencies.put('b', 1.49);
-        frequencies.put('c', 2.78);
-        frequencies.put('d', 4.25);
-        frequencies.put('e', 12.02);
-        frequencies.put('f', 2.23);
-        frequencies.put('g', 2.02);
-        frequencies.put('h', 6.09);
-        frequencies.put('i', 6.97);
-        frequencies.put('j', 0.15);
-        frequencies.put('k', 0.77);
-        frequencies.put('l', 4.03);
-        frequencies.put('m', 2.41);
-        frequencies.put('n', 6.75);
-        frequencies.put('o', 7.51);
-        frequencies.put('p', 1.93);
-        frequencies.put('q', 0.10);
-        frequencies.put('r', 5.99);
-        frequencies.put('s', 6.33);
-        frequencies.put('t', 9.06);
-        frequencies.put('u', 2.76);
-        frequencies.put('v', 0.98);
-        frequencies.put('w', 2.36);
-        frequencies.put('x', 0.15);
-        frequencies.put('y', 1.97);
-        frequencies.put('z', 0.07);
-        return Collections.unmodifiableMap(frequencies);
+    /**
+     * Включение кэша результатов анализа (null - выключение)
+     */
+    public static void setResultCache(ShiftCache cache) {
+        resultCache = cache;
     }
     
-    private static Map<Character, Double> createRussianFrequencies() {
-        Map<Character, Double> frequencies = new HashMap<>();
-        frequencies.put('а', 8.01);
-        frequencies.put('б', 1.59);
-        frequencies.put('в', 4.54);
-        frequencies.put('г', 1.70);
-        frequencies.put('д', 2.98);
-        frequencies.put('е', 8.45);
-        frequencies.put('ё', 0.04);
-        frequencies.put('ж', 0.94);
-        frequencies.put('з', 1.65);
-        frequencies.put('и', 7.35);
-        frequencies.put('й', 1.21);
-        frequencies.put('к', 3.49);
-        frequencies.put('л', 4.40);
-        frequencies.put('м', 3.21);
-        frequencies.put('н', 6.70);
-        frequencies.put('о', 10.97);
-        frequencies.put('п', 2.81);
-        frequencies.put('р', 4.73);
-        frequencies.put('с', 5.47);
-        frequencies.put('т', 6.26);
-        frequencies.put('у', 2.62);
-        frequencies.put('ф', 0.26);
-        frequencies.put('х', 0.97);
-        frequencies.put('ц', 0.48);
-        frequencies.put('ч', 1.44);
-        frequencies.put('ш', 0.73);
-        frequencies.put('щ', 0.36);
-        frequencies.put('ъ', 0.04);
-        frequencies.put('ы', 1.90);
-        frequencies.put('ь', 1.74);
-        frequencies.put('э', 0.32);
-        frequencies.put('ю', 0.64);
-        frequencies.put('я', 2.01);
-        return Collections.unmodifiableMap(frequencies);
+    /**
+     * Текущий кэш результатов анализа или null
+     */
+    public static ShiftCache resultCache() {
+        return resultCache;
     }
     
     /**
      * Определяет наиболее вероятный сдвиг для дешифрования
      */
     public static int findBestShift(String ciphertext) {
-        String language = detectLanguage(ciphertext);
-        
-        double bestScore = Double.MIN_VALUE;
-        int bestShift = 0;
-        
-        for (int shift = 1; shift <= 25; shift++) {
-            if (language.equals("russian") && shift > 32) break; // Русский алфавит 33 буквы
-            
-            String decrypted = CaesarCipher.decrypt(ciphertext, shift);
-            double score = calculateScore(decrypted, language);
-            
-            if (score > bestScore) {
-                bestScore = score;
-                bestShift = shift;
-            }
-        }
-        
-        return bestShift;
+        return findBestShift(ciphertext, AlphabetSet.DEFAULT);
     }
     
     /**
-     * Определяет язык текста
+     * Определяет наиболее вероятный сдвиг для заданного набора алфавитов
+     * (сдвиг берется по кольцу преобладающего алфавита)
      */
-    private static String detectLanguage(String text) {
-        int russianChars = 0;
-        int englishChars = 0;
-        
-        for (char c : text.toLowerCase().toCharArray()) {
-            if (c >= 'а' && c <= 'я' || c == 'ё') {
-                russianChars++;
-            } else if (c >= 'a' && c <= 'z') {
-                englishChars++;
-            }
+    public static int findBestShift(String ciphertext, AlphabetSet alphabets) {
+        ShiftCache cache = resultCache;
+        if (cache != null) {
+            return cache.get(ciphertext, alphabets, text -> rank(text, alphabets)).bestShift();
         }
-        
-        return russianChars > englishChars ? "russian" : "english";
+        ShiftScorer scorer = ShiftScorer.of(ciphertext, alphabets);
+        String language = scorer.language();
+        int count = scorer.shiftCount(language);
+        return bestShift(scorer.scores(language, count), count);
     }
     
     /**
-     * Вычисляет общий рейтинг текста
+     * Определение сдвига по выборке текста с параметрами по умолчанию
      */
-    private static double calculateScore(String text, String language) {
-        double frequencyScore = calculateFrequencyScore(text, language);
-        double bigramScore = calculateBigramScore(text, language);
-        double trigramScore = calculateTrigramScore(text, language);
-        double coincidenceScore = calculateCoincidenceIndex(text);
-        
-        // Взвешенная сумма всех оценок
-        return frequencyScore * 0.4 + bigramScore * 0.3 + trigramScore * 0.2 + coincidenceScore * 0.1;
+    public static ShiftGuess findBestShiftSampled(String ciphertext) {
+        return findBestShiftSampled(ciphertext, SamplingOptions.DEFAULT);
     }
     
     /**
-     * Частотный анализ букв
+     * Определение сдвига по выборке текста: начало текста и равномерно
+     * распределенные окна. Анализ прекращается, как только лучший сдвиг
+     * опережает следующий на заданный запас. Короткие тексты и тексты,
+     * для которых выборка не дала уверенного ответа, анализируются целиком.
      */
-    private static double calculateFrequencyScore(String text, String language) {
-        Map<Character, Integer> letterCounts = new HashMap<>();
-        int totalLetters = 0;
-        
-        // Подсчет букв
-        for (char c : text.toLowerCase().toCharArray()) {
-            if (Character.isLetter(c)) {
-                letterCounts.put(c, letterCounts.getOrDefault(c, 0) + 1);
-                totalLetters++;
-            }
+    public static ShiftGuess findBestShiftSampled(String ciphertext, SamplingOptions options) {
+        int length = ciphertext.length();
+        int sampleLength = options.prefixLength + options.windowCount * options.windowLength;
+        if (length <= sampleLength) {
+            return guess(ShiftScorer.of(ciphertext), length, false);
         }
         
-        if (totalLetters == 0) return 0;
+        ShiftScorer scorer = new ShiftScorer();
+        scorer.accept(ciphertext, 0, options.prefixLength);
+        int sampled = options.prefixLength;
         
-        // Выбор эталонных частот
-        Map<Character, Double> expectedFreqs = language.equals("russian") ? 
-            RUSSIAN_FREQUENCIES : ENGLISH_FREQUENCIES;
+        ShiftGuess result = guess(scorer, sampled, true);
+        if (isConfident(result, scorer, options)) {
+            return result;
+        }
         
-        // Вычисление chi-squared статистики
-        double chiSquared = 0;
-        for (Map.Entry<Character, Double> entry : expectedFreqs.entrySet()) {
-            char letter = entry.getKey();
-            double expected = (entry.getValue() / 100.0) * totalLetters;
-            double observed = letterCounts.getOrDefault(letter, 0);
+        // Окна равномерно распределены по оставшейся части текста
+        long stride = (long) (length - options.prefixLength) / options.windowCount;
+        for (int window = 0; window < options.windowCount; window++) {
+            int start = (int) (options.prefixLength + window * stride);
+            scorer.breakRun();
+            scorer.accept(ciphertext, start, start + options.windowLength);
+            sampled += options.windowLength;
             
-            if (expected > 0) {
-                chiSquared += Math.pow(observed - expected, 2) / expected;
+            result = guess(scorer, sampled, true);
+            if (isConfident(result, scorer, options)) {
+                return result;
             }
         }
         
-        // Чем меньше chi-squared, тем лучше совпадение
-        return 1.0 / (1.0 + chiSquared / 100.0);
+        // Выборка неоднозначна - анализируем весь текст
+        return guess(ShiftScorer.of(ciphertext), length, false);
+    }
+    
+    private static boolean isConfident(ShiftGuess guess, ShiftScorer scorer, SamplingOptions options) {
+        return scorer.letterCount() >= options.minLetters && guess.confidence >= options.confidenceMargin;
     }
     
     /**
-     * Анализ биграмм
+     * Лучший сдвиг и уверенность (относительный отрыв от второго места)
      */
-    private static double calculateBigramScore(String text, String language) {
-        Set<String> commonBigrams = language.equals("russian") ? 
-            RUSSIAN_BIGRAMS : ENGLISH_BIGRAMS;
+    static ShiftGuess guess(ShiftScorer scorer, int sampledChars, boolean sampled) {
+        String language = scorer.language();
+        int count = scorer.shiftCount(language);
+        double[] scores = scorer.scores(language, count);
+        int bestShift = bestShift(scores, count);
         
-        int bigramCount = 0;
-        int totalBigrams = 0;
-        
-        String cleanText = text.toLowerCase().replaceAll("[^а-яёa-z]", "");
-        
-        for (int i = 0; i < cleanText.length() - 1; i++) {
-            String bigram = cleanText.substring(i, i + 2);
-            totalBigrams++;
-            if (commonBigrams.contains(bigram)) {
-                bigramCount++;
+        double runnerUp = 0;
+        for (int shift = 1; shift < count; shift++) {
+            if (shift != bestShift && scores[shift] > runnerUp) {
+                runnerUp = scores[shift];
             }
         }
         
-        return totalBigrams > 0 ? (double) bigramCount / totalBigrams : 0;
+        double bestScore = bestShift == 0 ? 0 : scores[bestShift];
+        double confidence = bestScore > 0 ? (bestScore - runnerUp) / bestScore : 0;
+        return new ShiftGuess(bestShift, bestScore, confidence, sampledChars, sampled);
     }
     
     /**
-     * Анализ триграмм
+     * Сдвиг с наибольшей оценкой среди 1..count-1 (0, если все оценки нулевые)
      */
-    private static double calculateTrigramScore(String text, String language) {
-        Set<String> commonTrigrams = language.equals("russian") ? 
-            RUSSIAN_TRIGRAMS : ENGLISH_TRIGRAMS;
-        
-        int trigramCount = 0;
-        int totalTrigrams = 0;
-        
-        String cleanText = text.toLowerCase().replaceAll("[^а-яёa-z]", "");
+    static int bestShift(double[] scores, int count) {
+        double bestScore = Double.MIN_VALUE;
+        int bestShift = 0;
         
-        for (int i = 0; i < cleanText.length() - 2; i++) {
-            String trigram = cleanText.substring(i, i + 3);
-            totalTrigrams++;
-            if (commonTrigrams.contains(trigram)) {
-                trigramCount++;
+        for (int shift = 1; shift < count; shift++) {
+            if (scores[shift] > bestScore) {
+                bestScore = scores[shift];
+                bestShift = shift;
             }
         }
         
-        return totalTrigrams > 0 ? (double) trigramCount / totalTrigrams : 0;
+        return bestShift;
     }
     
     /**
-     * Индекс совпадений (Index of Coincidence)
+     * Получение всех возможных дешифровок с оценками.
+     * Тексты дешифровок - представления ShiftedText, которые сдвигают символы
+     * при чтении, поэтому память не растет с количеством вариантов.
      */
-    private static double calculateCoincidenceIndex(String text) {
-        Map<Character, Integer> letterCounts = new HashMap<>();
-        int totalLetters = 0;
-        
-        for (char c : text.toLowerCase().toCharArray()) {
-            if (Character.isLetter(c)) {
-                letterCounts.put(c, letterCounts.getOrDefault(c, 0) + 1);
-                totalLetters++;
-            }
-        }
-        
-        if (totalLetters <= 1) return 0;
-        
-        double ic = 0;
-        for (int count : letterCounts.values()) {
-            ic += count * (count - 1);  
-        }
-        
-        ic /= totalLetters * (totalLetters - 1);
-        return ic;
+    public static List<DecryptionResult> getAllDecryptions(String ciphertext) {
+        return getTopDecryptions(ciphertext, Integer.MAX_VALUE);
     }
     
     /**
-     * Получение всех возможных дешифровок с оценками
+     * Получение лучших дешифровок с оценками.
+     * Все сдвиги оцениваются по гистограммам, а тексты не копируются.
      */
-    public static List<DecryptionResult> getAllDecryptions(String ciphertext) {
-        String language = detectLanguage(ciphertext);
-        List<DecryptionResult> results = new ArrayList<>();
-        
-        int maxShift = language.equals("russian") ? 33 : 26;
-        
-        for (int shift = 1; shift < maxShift; shift++) {
-            String decrypted = CaesarCipher.decrypt(ciphertext, shift);
-            double score = calculateScore(decrypted, language);
-            results.add(new DecryptionResult(shift, decrypted, score));
-        }
-        
-        // Сортировка по убыванию рейтинга
-        results.sort((a, b) -> Double.compare(b.score, a.score));
-        return results;
+    public static List<DecryptionResult> getTopDecryptions(String ciphertext, int limit) {
+        return getTopDecryptions(ciphertext, limit, AlphabetSet.DEFAULT);
+    }
+    
+    /**
+     * Получение лучших дешифровок для заданного набора алфавитов
+     */
+    public static List<DecryptionResult> getTopDecryptions(String ciphertext, int limit, AlphabetSet alphabets) {
+        return decryptions(ciphertext, alphabets).limit(limit).collect(Collectors.toList());
+    }
+    
+    /**
+     * Дешифровки в порядке убывания оценки (английский и русский алфавиты)
+     */
+    public static Stream<DecryptionResult> decryptions(String ciphertext) {
+        return decryptions(ciphertext, AlphabetSet.DEFAULT);
+    }
+    
+    /**
+     * Дешифровки в порядке убывания оценки. Оценки всех сдвигов считаются сразу,
+     * а результаты создаются по мере чтения потока: первые K - limit(K).
+     * Если включен кэш, ранжирование сдвигов берется из него.
+     */
+    public static Stream<DecryptionResult> decryptions(String ciphertext, AlphabetSet alphabets) {
+        ShiftCache cache = resultCache;
+        ShiftCache.Ranking ranking = cache != null
+                ? cache.get(ciphertext, alphabets, text -> rank(text, alphabets))
+                : rank(ciphertext, alphabets);
+        return IntStream.range(0, ranking.size()).mapToObj(i -> {
+            int shift = ranking.shift(i);
+            return new DecryptionResult(shift, new ShiftedText(ciphertext, -shift, alphabets), ranking.score(shift));
+        });
+    }
+    
+    /**
+     * Оценка всех сдвигов текста и их ранжирование по убыванию оценки
+     */
+    public static ShiftCache.Ranking rank(String ciphertext, AlphabetSet alphabets) {
+        ShiftScorer scorer = ShiftScorer.of(ciphertext, alphabets);
+        String language = scorer.language();
+        return new ShiftCache.Ranking(language, alphabets, scorer.scores(language, scorer.shiftCount(language)));
     }
     
     /**
@@ -283,18 +192,78 @@ public class Analyzer {
      */
     public static class DecryptionResult {
         public final int shift;
-        public final String text;
+        public final CharSequence text;
         public final double score;
         
-        public DecryptionResult(int shift, String text, double score) {
+        public DecryptionResult(int shift, CharSequence text, double score) {
             this.shift = shift;
             this.text = text;
             this.score = score;
         }
         
+        /**
+         * Начало текста не длиннее maxChars символов ("..." в конце, если текст длиннее)
+         */
+        public String preview(int maxChars) {
+            if (text.length() <= maxChars) {
+                return text.toString();
+            }
+            return text.subSequence(0, Math.max(0, maxChars)) + "...";
+        }
+        
         @Override
         public String toString() {
             return String.format("Shift %d (Score: %.3f): %s", shift, score, text);
         }
     }
+    
+    /**
+     * Результат определения сдвига с оценкой уверенности
+     */
+    public static class ShiftGuess {
+        public final int shift;
+        public final double score;
+        public final double confidence;
+        public final int analyzedChars;
+        public final boolean sampled;
+        
+        public ShiftGuess(int shift, double score, double confidence, int analyzedChars, boolean sampled) {
+            this.shift = shift;
+            this.score = score;
+            this.confidence = confidence;
+            this.analyzedChars = analyzedChars;
+            this.sampled = sampled;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("Shift %d (Score: %.3f, Confidence: %.0f%%, %s %d chars)",
+                    shift, score, confidence * 100, sampled ? "sampled" : "analyzed", analyzedChars);
+        }
+    }
+    
+    /**
+     * Параметры выборки для анализа больших текстов
+     */
+    public static class SamplingOptions {
+        public static final SamplingOptions DEFAULT = new SamplingOptions(16 * 1024, 4 * 1024, 64, 2000, 0.2);
+        
+        public final int prefixLength;
+        public final int windowLength;
+        public final int windowCount;
+        public final int minLetters;
+        public final double confidenceMargin;
+        
+        public SamplingOptions(int prefixLength, int windowLength, int windowCount,
+                               int minLetters, double confidenceMargin) {
+            if (prefixLength < 0 || windowLength <= 0 || windowCount <= 0) {
+                throw new IllegalArgumentException("Incorrect sampling options");
+            }
+            this.prefixLength = prefixLength;
+            this.windowLength = windowLength;
+            this.windowCount = windowCount;
+            this.minLetters = minLetters;
+            this.confidenceMargin = confidenceMargin;
+        }
+    }
 }
\ No newline at end of file
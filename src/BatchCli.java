@@ -0,0 +1,495 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Пакетный режим командной строки для использования в скриптах.
+ * Вход читается из файла или stdin, результат пишется в файл или stdout
+ * через буферизованный поток; интерактивных вопросов нет.
+ *
+ * Примеры:
+ *   java Main encrypt --shift 3 --in input.txt --out output.txt
+ *   java Main decrypt --key lemon --in input.txt
+ *   cat messages.txt | java Main crack
+ *   java Main crack --in messages.txt --clusters 100000
+ *   java Main crack-key --in letter.txt --out letter-decrypted.txt
+ *   java Main search --words attack,dawn --in messages.txt
+ *   java Main index --index archive-index --in messages.txt
+ *   java Main query --index archive-index --query "attack at dawn"
+ *   java Main eval --in expressions.txt
+ *   java Main serve --port 8080 --cache 100000
+ *   java -Dcaesar.metrics=true Main crack --in messages.txt --metrics metrics.txt
+ */
+public final class BatchCli {
+
+    // Коды завершения
+    public static final int OK = 0;
+    public static final int RECORD_ERRORS = 1;
+    public static final int USAGE_ERROR = 2;
+
+    // Размер буферов ввода-вывода
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private BatchCli() {
+    }
+
+    /**
+     * Выполнение команды; возвращает код завершения процесса
+     */
+    public static int run(String[] args, InputStream stdin, OutputStream stdout, PrintStream stderr) {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            stderr.println("Error: " + e.getMessage());
+            printUsage(stderr);
+            return USAGE_ERROR;
+        }
+        if (options.command.equals("help")) {
+            printUsage(stderr);
+            return OK;
+        }
+        if (options.cacheSize != null) {
+            Analyzer.setResultCache(new ShiftCache(options.cacheSize));
+        }
+        if (options.command.equals("serve")) {
+            return serve(options, stderr);
+        }
+
+        try {
+            Charset inputCharset = options.charset;
+            int skip = 0;
+            if (inputCharset == null) {
+                if (options.input != null) {
+                    CharsetDetector.Detection detection = FileHandler.detectCharset(options.input);
+                    inputCharset = detection.charset;
+                    skip = detection.bomLength;
+                } else {
+                    inputCharset = StandardCharsets.UTF_8;
+                }
+            }
+            // Результат пишется в той же кодировке, что и вход
+            Charset outputCharset = options.charset != null ? options.charset : inputCharset;
+
+            // Стандартные потоки не закрываются, файлы закрываются после обработки
+            InputStream in = options.input != null ? Files.newInputStream(options.input) : stdin;
+            try {
+                OutputStream out = options.output != null ? Files.newOutputStream(options.output) : stdout;
+                try {
+                    in.skipNBytes(skip);
+                    Reader reader = new InputStreamReader(in, inputCharset);
+                    Writer writer = new BufferedWriter(new OutputStreamWriter(out, outputCharset), BUFFER_SIZE);
+                    int failed = execute(options, reader, writer, stderr);
+                    writer.flush();
+                    if (options.metrics) {
+                        writeMetrics(options.metricsOutput, stderr);
+                    }
+                    if (options.cacheSize != null) {
+                        stderr.println(Analyzer.resultCache().stats());
+                    }
+                    return failed > 0 ? RECORD_ERRORS : OK;
+                } finally {
+                    if (options.output != null) {
+                        out.close();
+                    }
+                }
+            } finally {
+                if (options.input != null) {
+                    in.close();
+                }
+            }
+        } catch (IOException e) {
+            stderr.println("Error: " + e.getMessage());
+            return RECORD_ERRORS;
+        } catch (ShiftIndex.InvalidQueryException e) {
+            // Запрос к индексу проверяется только при выполнении
+            stderr.println("Error: " + e.getMessage());
+            return USAGE_ERROR;
+        }
+    }
+
+    /**
+     * Запуск HTTP-сервиса; метод возвращает управление после остановки процесса
+     */
+    private static int serve(Options options, PrintStream stderr) {
+        CipherServer server;
+        try {
+            server = CipherServer.start(new InetSocketAddress(options.host, options.port));
+        } catch (IOException e) {
+            stderr.println("Error: " + e.getMessage());
+            return RECORD_ERRORS;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(1)));
+        stderr.println("Listening on http://" + options.host + ":" + server.address().getPort());
+        try {
+            server.awaitStop();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return OK;
+    }
+
+    /**
+     * Обработка входа; возвращает количество записей с ошибками
+     */
+    private static int execute(Options options, Reader reader, Writer writer, PrintStream stderr) throws IOException {
+        switch (options.command) {
+            case "encrypt":
+                if (options.key != null) {
+                    transform(reader, writer, VigenereCipher.encryptor(options.key, AlphabetSet.DEFAULT));
+                } else {
+                    transform(reader, writer, options.shift);
+                }
+                return 0;
+            case "decrypt":
+                if (options.key != null) {
+                    transform(reader, writer, VigenereCipher.decryptor(options.key, AlphabetSet.DEFAULT));
+                } else {
+                    transform(reader, writer, -options.shift);
+                }
+                return 0;
+            case "crack":
+                if (options.clusterLimit == null) {
+                    StreamingCracker.crack(reader, writer, options.threads);
+                    return 0;
+                }
+                RotationClusters clusters = new RotationClusters(AlphabetSet.DEFAULT, options.clusterLimit);
+                StreamingCracker.crack(reader, writer, '\n', options.threads, clusters);
+                stderr.println("Clusters: " + clusters.clusterCount() + " groups, " + clusters.messageCount()
+                        + " messages, " + clusters.crackCount() + " cracked");
+                return 0;
+            case "crack-key":
+                crackKey(reader, writer, stderr);
+                return 0;
+            case "search":
+                search(new BufferedReader(reader, BUFFER_SIZE), writer, new KeywordSearch(options.words));
+                return 0;
+            case "index":
+                index(new BufferedReader(reader, BUFFER_SIZE), options.index, stderr);
+                return 0;
+            case "query":
+                query(options.index, options.query, writer);
+                return 0;
+            case "eval":
+                return evaluate(new BufferedReader(reader, BUFFER_SIZE), writer, stderr);
+            default:
+                throw new IllegalStateException("Unknown command: " + options.command);
+        }
+    }
+
+    /**
+     * Шифрование и дешифрование: каждый символ сдвигается независимо,
+     * поэтому вход обрабатывается блоками, а строки сохраняются как есть
+     */
+    static void transform(Reader reader, Writer writer, int shift) throws IOException {
+        CipherEngine engine = CipherEngine.forShift(shift);
+        char[] buffer = new char[BUFFER_SIZE];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            engine.apply(buffer, 0, buffer, 0, read);
+            writer.write(buffer, 0, read);
+        }
+    }
+
+    /**
+     * Шифр Виженера: позиция в ключе переходит из блока в блок
+     */
+    static void transform(Reader reader, Writer writer, VigenereCipher cipher) throws IOException {
+        char[] buffer = new char[BUFFER_SIZE];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            cipher.apply(buffer, 0, buffer, 0, read);
+            writer.write(buffer, 0, read);
+        }
+    }
+
+    /**
+     * Подбор ключа Виженера по всему входу; найденный ключ выводится в stderr,
+     * расшифрованный текст - в выходной поток
+     */
+    private static void crackKey(Reader reader, Writer writer, PrintStream stderr) throws IOException {
+        StringBuilder text = new StringBuilder();
+        char[] buffer = new char[BUFFER_SIZE];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            text.append(buffer, 0, read);
+        }
+        String ciphertext = text.toString();
+        VigenereCracker.Result result = VigenereCracker.crack(ciphertext);
+        stderr.println(result);
+        writer.write(result.decrypt(ciphertext));
+    }
+
+    /**
+     * Поиск слов во всех сдвигах каждой строки; для каждого совпадения выводятся
+     * номер строки, позиция в строке, сдвиг и слово через табуляцию
+     */
+    private static void search(BufferedReader reader, Writer writer, KeywordSearch search) throws IOException {
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            for (KeywordSearch.Match match : search.findAll(line)) {
+                writer.write(lineNumber + "\t" + match.offset + "\t" + match.shift + "\t" + match.keyword + "\n");
+            }
+        }
+    }
+
+    /**
+     * Добавление каждой строки входа в индекс как отдельного сообщения;
+     * номера сообщений выводятся в stderr
+     */
+    private static void index(BufferedReader reader, Path directory, PrintStream stderr) throws IOException {
+        try (ShiftIndexWriter index = ShiftIndexWriter.open(directory)) {
+            long first = index.nextMessageId();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                index.add(line);
+            }
+            stderr.println("Indexed messages " + first + ".." + (index.nextMessageId() - 1));
+        }
+    }
+
+    /**
+     * Поиск по индексу; для каждого сообщения выводятся номер, позиция, сдвиг и язык.
+     * Запрос без слов из 4 и более букв - ShiftIndex.InvalidQueryException (неверные аргументы).
+     */
+    private static void query(Path directory, String query, Writer writer) throws IOException {
+        try (ShiftIndex index = ShiftIndex.open(directory)) {
+            for (ShiftIndex.Hit hit : index.search(query)) {
+                writer.write(hit.messageId + "\t" + hit.offset + "\t" + hit.shift + "\t" + hit.language + "\n");
+            }
+        }
+    }
+
+    /**
+     * Вывод метрик в формате Prometheus в файл или stderr
+     */
+    private static void writeMetrics(Path output, PrintStream stderr) throws IOException {
+        if (output != null) {
+            Files.writeString(output, Metrics.prometheus(), StandardCharsets.UTF_8);
+        } else {
+            stderr.print(Metrics.prometheus());
+            stderr.flush();
+        }
+    }
+
+    /**
+     * Вычисление выражения в каждой строке; пустые строки сохраняются,
+     * ошибка выводится на месте результата, чтобы не сбить нумерацию строк
+     */
+    static int evaluate(BufferedReader reader, Writer writer, PrintStream stderr) throws IOException {
+        int failed = 0;
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (!line.isBlank()) {
+                try {
+                    writer.write(Double.toString(ExpressionEvaluator.evaluate(line)));
+                } catch (IllegalArgumentException | ArithmeticException e) {
+                    failed++;
+                    writer.write("Error: " + e.getMessage());
+                    stderr.println("Line " + lineNumber + ": " + e.getMessage());
+                }
+            }
+            writer.write('\n');
+        }
+        return failed;
+    }
+
+    private static void printUsage(PrintStream out) {
+        out.println("Usage: java Main <command> [options]");
+        out.println("Commands:");
+        out.println("  encrypt --shift N   Encrypt the input with the Caesar cipher");
+        out.println("  decrypt --shift N   Decrypt the input with the Caesar cipher");
+        out.println("  encrypt --key KEY   Encrypt the input with the Vigenere cipher");
+        out.println("  decrypt --key KEY   Decrypt the input with the Vigenere cipher");
+        out.println("  crack               Find the shift of every input line;");
+        out.println("                      prints shift, language, score and decrypted text");
+        out.println("  crack-key           Find the Vigenere key of the whole input;");
+        out.println("                      prints the key to stderr and the decrypted text");
+        out.println("  search --words LIST Find comma-separated plaintext words under every shift;");
+        out.println("                      prints line, offset, shift and word for each match");
+        out.println("  index --index DIR   Add every input line to the shift-invariant index as a message");
+        out.println("  query --index DIR --query TEXT");
+        out.println("                      Find indexed messages containing the words under any shift;");
+        out.println("                      prints message, offset, shift and language");
+        out.println("  eval                Evaluate the expression on every input line");
+        out.println("  serve               Start the HTTP service (POST /encrypt, /decrypt, /crack, /eval)");
+        out.println("  help                Show this message");
+        out.println("Options:");
+        out.println("  --in FILE           Input file (default: stdin)");
+        out.println("  --out FILE          Output file (default: stdout)");
+        out.println("  --charset NAME      Input and output charset (default: detected, UTF-8 for stdin)");
+        out.println("  --threads N         Worker threads for crack (default: available processors)");
+        out.println("  --cache N           Cache shift rankings of up to N repeated texts (crack, serve)");
+        out.println("  --clusters N        Crack shifted copies of a line once, keeping up to N groups (crack)");
+        out.println("  --host HOST         Address for serve (default: 127.0.0.1)");
+        out.println("  --port N            Port for serve (default: 8080)");
+        out.println("  --metrics FILE      Write metrics in Prometheus format after the run (- for stderr);");
+        out.println("                      requires -Dcaesar.metrics=true");
+        out.println("Without arguments the interactive menu is started.");
+    }
+
+    /**
+     * Разобранные аргументы командной строки
+     */
+    private static class Options {
+        String command;
+        Integer shift;
+        int[] key;
+        List<String> words;
+        Path index;
+        String query;
+        Path input;
+        Path output;
+        Charset charset;
+        boolean metrics;
+        Path metricsOutput;
+        Integer cacheSize;
+        Integer clusterLimit;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String host = "127.0.0.1";
+        int port = 8080;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            options.command = args[0].toLowerCase();
+            for (int i = 1; i < args.length; i++) {
+                String name = args[i];
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for option: " + name);
+                }
+                String value = args[++i];
+                try {
+                    switch (name) {
+                        case "--shift":
+                            options.shift = Integer.parseInt(value);
+                            break;
+                        case "--key":
+                            options.key = VigenereCipher.keyShifts(value, AlphabetSet.DEFAULT);
+                            break;
+                        case "--words":
+                            options.words = new ArrayList<>();
+                            for (String word : value.split(",")) {
+                                if (!word.isEmpty()) {
+                                    options.words.add(word);
+                                }
+                            }
+                            break;
+                        case "--index":
+                            options.index = Paths.get(value);
+                            break;
+                        case "--query":
+                            options.query = value;
+                            break;
+                        case "--in":
+                            options.input = value.equals("-") ? null : Paths.get(value);
+                            break;
+                        case "--out":
+                            options.output = value.equals("-") ? null : Paths.get(value);
+                            break;
+                        case "--threads":
+                            options.threads = Integer.parseInt(value);
+                            if (options.threads < 1) {
+                                throw new IllegalArgumentException("Invalid thread count: " + value);
+                            }
+                            break;
+                        case "--metrics":
+                            if (!Metrics.ENABLED) {
+                                throw new IllegalArgumentException(
+                                        "Metrics are disabled; start the JVM with -Dcaesar.metrics=true");
+                            }
+                            options.metrics = true;
+                            options.metricsOutput = value.equals("-") ? null : Paths.get(value);
+                            break;
+                        case "--cache":
+                            options.cacheSize = Integer.parseInt(value);
+                            if (options.cacheSize < 1) {
+                                throw new IllegalArgumentException("Invalid cache size: " + value);
+                            }
+                            break;
+                        case "--clusters":
+                            options.clusterLimit = Integer.parseInt(value);
+                            if (options.clusterLimit < 1) {
+                                throw new IllegalArgumentException("Invalid cluster limit: " + value);
+                            }
+                            break;
+                        case "--host":
+                            options.host = value;
+                            break;
+                        case "--port":
+                            options.port = Integer.parseInt(value);
+                            if (options.port < 0 || options.port > 65535) {
+                                throw new IllegalArgumentException("Invalid port: " + value);
+                            }
+                            break;
+                        case "--charset":
+                            options.charset = Charset.forName(value);
+                            break;
+                        default:
+                            throw new IllegalArgumentException("Unknown option: " + name);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid number: " + value);
+                } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+                    throw new IllegalArgumentException("Unsupported charset: " + value);
+                } catch (InvalidPathException e) {
+                    throw new IllegalArgumentException("Invalid path: " + value);
+                }
+            }
+
+            switch (options.command) {
+                case "encrypt":
+                case "decrypt":
+                    if ((options.shift == null) == (options.key == null)) {
+                        throw new IllegalArgumentException("Exactly one of --shift and --key is required for "
+                                + options.command);
+                    }
+                    break;
+                case "search":
+                    if (options.words == null || options.words.isEmpty()) {
+                        throw new IllegalArgumentException("Option --words is required for search");
+                    }
+                    break;
+                case "index":
+                case "query":
+                    if (options.index == null) {
+                        throw new IllegalArgumentException("Option --index is required for " + options.command);
+                    }
+                    if (options.command.equals("query") && options.query == null) {
+                        throw new IllegalArgumentException("Option --query is required for query");
+                    }
+                    break;
+                case "crack":
+                case "crack-key":
+                case "eval":
+                case "serve":
+                case "help":
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown command: " + args[0]);
+            }
+            return options;
+        }
+    }
+}
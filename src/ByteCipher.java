@@ -0,0 +1,147 @@
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Шифр Цезаря над байтами однобайтовой кодировки.
+ * Для Windows-1251, CP1252 и подобных кодировок сдвиг символа - это замена
+ * байта по таблице из 256 элементов, поэтому текст не нужно декодировать.
+ * Для UTF-8 таблица строится только для ASCII; байты старше 0x7F
+ * помечаются как неподдерживаемые.
+ */
+public final class ByteCipher {
+
+    private static final Map<String, ByteCipher> CACHE = new ConcurrentHashMap<>();
+
+    private final byte[] table;
+    private final boolean asciiOnly;
+
+    private ByteCipher(byte[] table, boolean asciiOnly) {
+        this.table = table;
+        this.asciiOnly = asciiOnly;
+    }
+
+    /**
+     * Проверка, можно ли обработать кодировку побайтово
+     */
+    public static boolean isSupported(Charset charset) {
+        return isAsciiCompatible(charset) || isSingleByte(charset);
+    }
+
+    /**
+     * Таблица замены для кодировки и сдвига (отрицательный сдвиг - дешифрование)
+     */
+    public static ByteCipher forShift(Charset charset, int shift) {
+        if (!isSupported(charset)) {
+            throw new IllegalArgumentException("Charset is not single-byte: " + charset.name());
+        }
+        // Сдвиги английского и русского алфавитов повторяются с периодом 416
+        int normalized = Math.floorMod(shift, AlphabetSet.DEFAULT.period());
+        return CACHE.computeIfAbsent(charset.name() + ':' + normalized,
+                key -> build(charset, normalized));
+    }
+
+    /**
+     * Истина, если байты старше 0x7F нельзя обработать по таблице (UTF-8)
+     */
+    public boolean isAsciiOnly() {
+        return asciiOnly;
+    }
+
+    /**
+     * Замена одного байта
+     */
+    public byte map(byte b) {
+        return table[b & 0xFF];
+    }
+
+    /**
+     * Обработка length байтов из in (с позиции inOffset) в out (с позиции outOffset).
+     * Позиции буферов не меняются.
+     */
+    public void apply(ByteBuffer in, int inOffset, ByteBuffer out, int outOffset, int length) {
+        if (Metrics.ENABLED) {
+            Metrics.BYTES_SHIFTED.add(length);
+        }
+        byte[] table = this.table;
+        for (int i = 0; i < length; i++) {
+            out.put(outOffset + i, table[in.get(inOffset + i) & 0xFF]);
+        }
+    }
+
+    /**
+     * Обработка массива байтов; исходный и результирующий массивы могут совпадать
+     */
+    public void apply(byte[] src, int srcOffset, byte[] dst, int dstOffset, int length) {
+        if (Metrics.ENABLED) {
+            Metrics.BYTES_SHIFTED.add(length);
+        }
+        byte[] table = this.table;
+        for (int i = 0; i < length; i++) {
+            dst[dstOffset + i] = table[src[srcOffset + i] & 0xFF];
+        }
+    }
+
+    private static ByteCipher build(Charset charset, int shift) {
+        CipherEngine engine = CipherEngine.forShift(shift);
+        boolean asciiOnly = !isSingleByte(charset);
+        byte[] table = new byte[256];
+
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        CharsetEncoder encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+
+        for (int b = 0; b < 256; b++) {
+            table[b] = (byte) b;
+            if (asciiOnly && b > 0x7F) {
+                continue;
+            }
+            char c;
+            try {
+                CharBuffer decoded = decoder.decode(ByteBuffer.wrap(new byte[] {(byte) b}));
+                if (decoded.length() != 1) {
+                    continue;
+                }
+                c = decoded.get(0);
+            } catch (CharacterCodingException e) {
+                // Байт не соответствует символу - оставляем без изменений
+                continue;
+            }
+
+            char shifted = engine.map(c);
+            if (shifted == c) {
+                continue;
+            }
+            try {
+                ByteBuffer encoded = encoder.encode(CharBuffer.wrap(new char[] {shifted}));
+                if (encoded.remaining() != 1) {
+                    throw new IllegalArgumentException("Charset cannot encode shifted letter: " + charset.name());
+                }
+                table[b] = encoded.get(0);
+            } catch (CharacterCodingException e) {
+                throw new IllegalArgumentException("Charset cannot encode shifted letter: " + charset.name());
+            }
+        }
+        return new ByteCipher(table, asciiOnly);
+    }
+
+    private static boolean isAsciiCompatible(Charset charset) {
+        return charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII);
+    }
+
+    private static boolean isSingleByte(Charset charset) {
+        return charset.canEncode()
+                && charset.newEncoder().maxBytesPerChar() == 1.0f
+                && charset.newDecoder().maxCharsPerByte() == 1.0f;
+    }
+}
@@ -1,15 +1,7 @@
 public class CaesarCipher {
     
-    // Английский алфавит
-    private static final String ENGLISH_LOWER = "abcdefghijklmnopqrstuvwxyz";
-    private static final String ENGLISH_UPPER = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
-    
-    // Русский алфавит
-    private static final String RUSSIAN_LOWER = "абвгдежзийклмнопрстуфхцчшщъыьэюя";
-    private static final String RUSSIAN_UPPER = "АБВГДЕЖЗИЙКЛМНОПРСТУФХЦЧШЩЪЫЬЭЮЯ";
-    
     /**
-     * Шифрование текста шифром Цезаря
+     * Шифрование текста шифром Цезаря (английский и русский алфавиты)
      */
     public static String encrypt(String text, int shift) {
         return processText(text, shift);
@@ -23,63 +15,44 @@ public class CaesarCipher {
     }
     
     /**
-     * Основная логика обработки текста
+     * Шифрование текста для заданного набора алфавитов
      */
-    private static String processText(String text, int shift) {
-        StringBuilder result = new StringBuilder();
-        
-        for (char c : text.toCharArray()) {
-            char shiftedChar = shiftCharacter(c, shift);
-            result.append(shiftedChar);
-        }
-        
-        return result.toString();
+    public static String encrypt(String text, int shift, AlphabetSet alphabets) {
+        return ParallelCipher.apply(text, alphabets, shift);
     }
     
     /**
-     * Сдвиг одного символа
+     * Дешифрование текста для заданного набора алфавитов
      */
-    private static char shiftCharacter(char c, int shift) {
-        // Проверяем английские буквы (строчные)
-        if (ENGLISH_LOWER.indexOf(c) != -1) {
-            return shiftInAlphabet(c, shift, ENGLISH_LOWER);
-        }
-        
-        // Проверяем английские буквы (заглавные)
-        if (ENGLISH_UPPER.indexOf(c) != -1) {
-            return shiftInAlphabet(c, shift, ENGLISH_UPPER);
-        }
-        
-        // Проверяем русские буквы (строчные)
-        if (RUSSIAN_LOWER.indexOf(c) != -1) {
-            return shiftInAlphabet(c, shift, RUSSIAN_LOWER);
-        }
-        
-        // Проверяем русские буквы (заглавные)
-        if (RUSSIAN_UPPER.indexOf(c) != -1) {
-            return shiftInAlphabet(c, shift, RUSSIAN_UPPER);
-        }
-        
-        // Если символ не буква, возвращаем как есть
-        return c;
+    public static String decrypt(String text, int shift, AlphabetSet alphabets) {
+        return ParallelCipher.apply(text, alphabets, -shift);
     }
     
     /**
-     * Сдвиг символа в пределах алфавита
+     * Шифрование текста со своим сдвигом для каждого алфавита набора
+     * (shifts[i] - сдвиг алфавита alphabets.get(i))
      */
-    private static char shiftInAlphabet(char c, int shift, String alphabet) {
-        int currentIndex = alphabet.indexOf(c);
-        int alphabetSize = alphabet.length();
-        
-        // Вычисляем новый индекс с учетом циклического сдвига
-        int newIndex = (currentIndex + shift) % alphabetSize;
-        
-        // Обрабатываем отрицательные индексы
-        if (newIndex < 0) {
-            newIndex += alphabetSize;
+    public static String encrypt(String text, int[] shifts, AlphabetSet alphabets) {
+        return ParallelCipher.apply(text, alphabets, shifts);
+    }
+    
+    /**
+     * Дешифрование текста со своим сдвигом для каждого алфавита набора
+     * (shifts[i] - сдвиг алфавита alphabets.get(i))
+     */
+    public static String decrypt(String text, int[] shifts, AlphabetSet alphabets) {
+        int[] negated = new int[shifts.length];
+        for (int i = 0; i < shifts.length; i++) {
+            negated[i] = -shifts[i];
         }
-        
-        return alphabet.charAt(newIndex);
+        return ParallelCipher.apply(text, alphabets, negated);
+    }
+    
+    /**
+     * Основная логика обработки текста
+     */
+    private static String processText(String text, int shift) {
+        return ParallelCipher.apply(text, shift);
     }
     
     /**
@@ -107,5 +80,14 @@ public class CaesarCipher {
         System.out.println("Оригинал: " + testRu);
         System.out.println("Зашифровано: " + encrypted);
         System.out.println("Расшифровано: " + decrypted);
+        
+        // Другие алфавиты из реестра
+        System.out.println("\n=== Other alphabets ===");
+        AlphabetSet ukrainian = AlphabetSet.of("english", "ukrainian");
+        AlphabetSet german = AlphabetSet.of("german");
+        AlphabetSet greek = AlphabetSet.of("english", "greek");
+        System.out.println("Ukrainian: " + encrypt("Їжак ґанок", 3, ukrainian));
+        System.out.println("German: " + encrypt("Größe Übung", 3, german));
+        System.out.println("Greek: " + encrypt("Καλημέρα κόσμε", 3, greek));
     }
 }
\ No newline at end of file
@@ -0,0 +1,232 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Определение кодировки текста без полного декодирования.
+ * Порядок проверок: метка порядка байтов (BOM), признаки UTF-16 в начале файла,
+ * строгая проверка корректности UTF-8 по всем байтам и, наконец, выбор между
+ * Windows-1251 и CP1252 по статистике начала файла.
+ */
+public final class CharsetDetector {
+
+    public static final Charset WINDOWS_1251 = Charset.forName("windows-1251");
+    public static final Charset WINDOWS_1252 = Charset.forName("windows-1252");
+
+    // Размер начального фрагмента для статистических проверок
+    private static final int SAMPLE_SIZE = 64 * 1024;
+
+    // Размер блока при проверке UTF-8 в файле
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private CharsetDetector() {
+    }
+
+    /**
+     * Определение кодировки массива байтов
+     */
+    public static Detection detect(byte[] bytes) {
+        return detect(bytes, bytes.length, true);
+    }
+
+    /**
+     * Определение кодировки по первым length байтам.
+     * Если complete = false, байты - только начало текста, и незавершенная
+     * последовательность UTF-8 в конце фрагмента не считается ошибкой.
+     */
+    public static Detection detect(byte[] bytes, int length, boolean complete) {
+        Detection byMarks = detectByMarks(bytes, Math.min(length, SAMPLE_SIZE));
+        if (byMarks != null) {
+            return byMarks;
+        }
+
+        Utf8Validator validator = new Utf8Validator();
+        validator.feed(bytes, 0, length);
+        if (validator.isValid() && (!complete || validator.isComplete())) {
+            return new Detection(StandardCharsets.UTF_8, 1.0, 0);
+        }
+        return detectSingleByte(bytes, Math.min(length, SAMPLE_SIZE));
+    }
+
+    /**
+     * Определение кодировки файла. Статистика собирается по начальному фрагменту,
+     * а корректность UTF-8 проверяется потоково по всему файлу без декодирования.
+     */
+    public static Detection detect(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] sample = new byte[SAMPLE_SIZE];
+            int sampleLength = in.readNBytes(sample, 0, SAMPLE_SIZE);
+
+            Detection byMarks = detectByMarks(sample, sampleLength);
+            if (byMarks != null) {
+                return byMarks;
+            }
+
+            Utf8Validator validator = new Utf8Validator();
+            validator.feed(sample, 0, sampleLength);
+            if (validator.isValid() && sampleLength == SAMPLE_SIZE) {
+                // Остаток файла проверяется блоками, пока не встретится ошибка
+                byte[] chunk = new byte[CHUNK_SIZE];
+                int read;
+                while (validator.isValid() && (read = in.read(chunk)) != -1) {
+                    validator.feed(chunk, 0, read);
+                }
+            }
+            if (validator.isValid() && validator.isComplete()) {
+                return new Detection(StandardCharsets.UTF_8, 1.0, 0);
+            }
+            return detectSingleByte(sample, sampleLength);
+        }
+    }
+
+    /**
+     * Проверка BOM и характерного для UTF-16 чередования байтов
+     */
+    private static Detection detectByMarks(byte[] bytes, int length) {
+        if (length >= 3 && (bytes[0] & 0xFF) == 0xEF && (bytes[1] & 0xFF) == 0xBB && (bytes[2] & 0xFF) == 0xBF) {
+            return new Detection(StandardCharsets.UTF_8, 1.0, 3);
+        }
+        if (length >= 2 && (bytes[0] & 0xFF) == 0xFE && (bytes[1] & 0xFF) == 0xFF) {
+            return new Detection(StandardCharsets.UTF_16BE, 1.0, 2);
+        }
+        if (length >= 2 && (bytes[0] & 0xFF) == 0xFF && (bytes[1] & 0xFF) == 0xFE) {
+            return new Detection(StandardCharsets.UTF_16LE, 1.0, 2);
+        }
+
+        // Текст в UTF-16 без BOM: у латиницы, греческого и кириллицы старший байт символа
+        // не больше 0x08, а в однобайтовых кодировках и UTF-8 такие байты почти не встречаются
+        if (length >= 4) {
+            int evenLow = 0;
+            int oddLow = 0;
+            for (int i = 0; i + 1 < length; i += 2) {
+                if (isHighHalf(bytes[i])) evenLow++;
+                if (isHighHalf(bytes[i + 1])) oddLow++;
+            }
+            double pairs = length / 2;
+            if (evenLow / pairs > 0.3 && oddLow / pairs < 0.05) {
+                return new Detection(StandardCharsets.UTF_16BE, Math.min(1.0, evenLow / pairs * 1.25), 0);
+            }
+            if (oddLow / pairs > 0.3 && evenLow / pairs < 0.05) {
+                return new Detection(StandardCharsets.UTF_16LE, Math.min(1.0, oddLow / pairs * 1.25), 0);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Выбор между Windows-1251 и CP1252.
+     * В русском тексте байты 0xC0-0xFF образуют целые слова, а в западноевропейском
+     * тексте это отдельные буквы с диакритикой среди ASCII-букв.
+     */
+    private static Detection detectSingleByte(byte[] bytes, int length) {
+        int cyrillicPairs = 0;
+        int mixedPairs = 0;
+        for (int i = 0; i + 1 < length; i++) {
+            boolean first = isHighLetter(bytes[i]);
+            boolean second = isHighLetter(bytes[i + 1]);
+            if (first && second) {
+                cyrillicPairs++;
+            } else if ((first && isAsciiLetter(bytes[i + 1])) || (second && isAsciiLetter(bytes[i]))) {
+                mixedPairs++;
+            }
+        }
+
+        int total = cyrillicPairs + mixedPairs;
+        if (total == 0) {
+            return new Detection(WINDOWS_1251, 0.5, 0);
+        }
+        if (cyrillicPairs >= mixedPairs) {
+            return new Detection(WINDOWS_1251, (double) cyrillicPairs / total, 0);
+        }
+        return new Detection(WINDOWS_1252, (double) mixedPairs / total, 0);
+    }
+
+    private static boolean isHighHalf(byte b) {
+        return b >= 0x00 && b <= 0x08;
+    }
+
+    private static boolean isHighLetter(byte b) {
+        int value = b & 0xFF;
+        return value >= 0xC0 || value == 0xA8 || value == 0xB8;
+    }
+
+    private static boolean isAsciiLetter(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z');
+    }
+
+    /**
+     * Строгая проверка UTF-8: запрещены избыточные формы, суррогаты
+     * и кодовые точки больше U+10FFFF. Данные можно подавать частями.
+     */
+    private static class Utf8Validator {
+        private int pending;
+        private int codePoint;
+        private int minimum;
+        private boolean valid = true;
+
+        void feed(byte[] bytes, int offset, int length) {
+            int end = offset + length;
+            for (int i = offset; i < end && valid; i++) {
+                int b = bytes[i] & 0xFF;
+                if (pending == 0) {
+                    if (b < 0x80) {
+                        continue;
+                    } else if (b >= 0xC2 && b <= 0xDF) {
+                        start(1, b & 0x1F, 0x80);
+                    } else if (b >= 0xE0 && b <= 0xEF) {
+                        start(2, b & 0x0F, 0x800);
+                    } else if (b >= 0xF0 && b <= 0xF4) {
+                        start(3, b & 0x07, 0x10000);
+                    } else {
+                        valid = false;
+                    }
+                } else if ((b & 0xC0) == 0x80) {
+                    codePoint = (codePoint << 6) | (b & 0x3F);
+                    if (--pending == 0) {
+                        valid = codePoint >= minimum && codePoint <= 0x10FFFF
+                                && (codePoint < 0xD800 || codePoint > 0xDFFF);
+                    }
+                } else {
+                    valid = false;
+                }
+            }
+        }
+
+        private void start(int pending, int codePoint, int minimum) {
+            this.pending = pending;
+            this.codePoint = codePoint;
+            this.minimum = minimum;
+        }
+
+        boolean isValid() {
+            return valid;
+        }
+
+        boolean isComplete() {
+            return pending == 0;
+        }
+    }
+
+    /**
+     * Результат определения кодировки
+     */
+    public static class Detection {
+        public final Charset charset;
+        public final double confidence;
+        public final int bomLength;
+
+        public Detection(Charset charset, double confidence, int bomLength) {
+            this.charset = charset;
+            this.confidence = confidence;
+            this.bomLength = bomLength;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (confidence: %.0f%%)", charset.name(), confidence * 100);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * Табличный движок шифра Цезаря.
+ * Для набора алфавитов и сдвига строится одна таблица замены на весь диапазон
+ * букв набора, поэтому обработка текста - один проход, в котором на каждый
+ * символ приходится одна проверка диапазона и одно чтение из таблицы.
+ */
+public final class CipherEngine {
+
+    private final char base;
+    private final char[] table;
+
+    private CipherEngine(char base, char[] table) {
+        this.base = base;
+        this.table = table;
+    }
+
+    /**
+     * Движок для заданного сдвига (отрицательный сдвиг - дешифрование)
+     * для английского и русского алфавитов
+     */
+    public static CipherEngine forShift(int shift) {
+        return forShift(AlphabetSet.DEFAULT, shift);
+    }
+
+    /**
+     * Движок для заданного сдвига и набора алфавитов.
+     * Движки кэшируются в наборе, повторный вызов не строит таблицу заново.
+     */
+    public static CipherEngine forShift(AlphabetSet alphabets, int shift) {
+        return alphabets.engine(Math.floorMod(shift, alphabets.period()));
+    }
+
+    /**
+     * Движок со своим сдвигом для каждого алфавита набора
+     * (shifts[i] - сдвиг алфавита alphabets.get(i)).
+     * Такие движки не кэшируются.
+     */
+    public static CipherEngine forShifts(AlphabetSet alphabets, int[] shifts) {
+        if (shifts.length != alphabets.size()) {
+            throw new IllegalArgumentException("Expected " + alphabets.size() + " shifts, got " + shifts.length);
+        }
+        return build(alphabets, shifts);
+    }
+
+    /**
+     * Построение таблицы с одинаковым сдвигом для всех алфавитов
+     */
+    static CipherEngine build(AlphabetSet alphabets, int shift) {
+        int[] shifts = new int[alphabets.size()];
+        Arrays.fill(shifts, shift);
+        return build(alphabets, shifts);
+    }
+
+    /**
+     * Построение таблицы: буквы каждого алфавита сдвигаются по его кольцу
+     * с сохранением регистра, остальные символы диапазона не меняются
+     */
+    private static CipherEngine build(AlphabetSet alphabets, int[] shifts) {
+        char base = alphabets.firstChar();
+        char[] table = new char[alphabets.range()];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (char) (base + i);
+        }
+        for (int a = 0; a < alphabets.size(); a++) {
+            Alphabet alphabet = alphabets.get(a);
+            int size = alphabet.size();
+            for (int i = 0; i < size; i++) {
+                int target = Math.floorMod(i + shifts[a], size);
+                table[alphabet.lower(i) - base] = alphabet.lower(target);
+                table[alphabet.upper(i) - base] = alphabet.upper(target);
+            }
+        }
+        return new CipherEngine(base, table);
+    }
+
+    /**
+     * Сдвиг одного символа
+     */
+    public char map(char c) {
+        int index = c - base;
+        return index >= 0 && index < table.length ? table[index] : c;
+    }
+
+    /**
+     * Обработка строки
+     */
+    public String apply(String text) {
+        char[] chars = text.toCharArray();
+        apply(chars, 0, chars, 0, chars.length);
+        return new String(chars);
+    }
+
+    /**
+     * Обработка массива в переданный буфер без выделения памяти.
+     * Исходный и результирующий массивы могут совпадать.
+     */
+    public void apply(char[] src, int srcOffset, char[] dst, int dstOffset, int length) {
+        if (Metrics.ENABLED) {
+            Metrics.CHARS_SHIFTED.add(length);
+        }
+        char[] table = this.table;
+        char base = this.base;
+        for (int i = 0; i < length; i++) {
+            char c = src[srcOffset + i];
+            int index = c - base;
+            if (index >= 0 && index < table.length) {
+                c = table[index];
+            }
+            dst[dstOffset + i] = c;
+        }
+    }
+
+    /**
+     * Обработка всех оставшихся символов буфера in в буфер out.
+     * Позиции обоих буферов сдвигаются на количество обработанных символов.
+     */
+    public void apply(CharBuffer in, CharBuffer out) {
+        int length = in.remaining();
+        if (out.remaining() < length) {
+            throw new IllegalArgumentException("Output buffer is too small");
+        }
+        if (in.hasArray() && out.hasArray()) {
+            apply(in.array(), in.arrayOffset() + in.position(),
+                  out.array(), out.arrayOffset() + out.position(), length);
+            in.position(in.position() + length);
+            out.position(out.position() + length);
+            return;
+        }
+        if (Metrics.ENABLED) {
+            Metrics.CHARS_SHIFTED.add(length);
+        }
+        while (in.hasRemaining()) {
+            out.put(map(in.get()));
+        }
+    }
+}
@@ -0,0 +1,257 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HTTP-сервис на встроенном в JDK HttpServer для долгоживущего процесса:
+ * запуск JVM и прогрев JIT происходят один раз, а не на каждое задание.
+ *
+ * Конечные точки (тело запроса - текст, по умолчанию UTF-8; кодировка
+ * берется из параметра charset заголовка Content-Type):
+ *   POST /encrypt?shift=N или ?key=KEY  - шифрование Цезаря или Виженера
+ *   POST /decrypt?shift=N или ?key=KEY  - дешифрование
+ *   POST /crack                         - подбор сдвига для каждой строки
+ *   POST /eval                          - вычисление выражения в каждой строке
+ *   GET  /metrics                       - метрики в формате Prometheus
+ *
+ * Тело запроса читается и ответ пишется блоками (ответ передается частями),
+ * поэтому большие тексты не загружаются в память целиком. Каждый запрос
+ * выполняется в отдельном виртуальном потоке, если JVM их поддерживает
+ * (Java 21+), иначе - в пуле потоков, создаваемых по требованию.
+ */
+public final class CipherServer {
+
+    // Размер буферов ввода-вывода
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Очередь входящих соединений
+    private static final int BACKLOG = 1024;
+
+    // Ошибки вычисления выражений уже выводятся в ответ на месте результата
+    private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    private CipherServer(HttpServer server, ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+    }
+
+    /**
+     * Запуск сервера на заданном адресе (порт 0 - любой свободный)
+     */
+    public static CipherServer start(InetSocketAddress address) throws IOException {
+        HttpServer server = HttpServer.create(address, BACKLOG);
+        ExecutorService executor = newRequestExecutor();
+        server.createContext("/encrypt", exchange -> handle(exchange, "POST", query -> transform(query, false)));
+        server.createContext("/decrypt", exchange -> handle(exchange, "POST", query -> transform(query, true)));
+        server.createContext("/crack", exchange -> handle(exchange, "POST",
+                query -> (reader, writer) -> StreamingCracker.crack(reader, writer, 1)));
+        server.createContext("/eval", exchange -> handle(exchange, "POST",
+                query -> (reader, writer) ->
+                        BatchCli.evaluate(new BufferedReader(reader, BUFFER_SIZE), writer, DISCARD)));
+        server.createContext("/metrics", exchange -> handle(exchange, "GET", query -> {
+            if (!Metrics.ENABLED) {
+                throw new IllegalArgumentException("Metrics are disabled; start the JVM with -Dcaesar.metrics=true");
+            }
+            return (reader, writer) -> Metrics.writePrometheus(writer);
+        }));
+        server.setExecutor(executor);
+        server.start();
+        return new CipherServer(server, executor);
+    }
+
+    /**
+     * Адрес, на котором сервер принимает соединения
+     */
+    public InetSocketAddress address() {
+        return server.getAddress();
+    }
+
+    /**
+     * Остановка сервера: новые соединения не принимаются, текущим запросам
+     * дается до delaySeconds секунд на завершение
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(delaySeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        stopped.countDown();
+    }
+
+    /**
+     * Ожидание остановки сервера
+     */
+    public void awaitStop() throws InterruptedException {
+        stopped.await();
+    }
+
+    /**
+     * Виртуальный поток на каждый запрос (Java 21+) или пул потоков по требованию.
+     * Фабрика ищется через отражение, так как проект собирается для Java 17.
+     */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "cipher-server-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Обработка запроса: проверка пути и метода, разбор параметров и потоковая
+     * передача тела через обработчик. Ошибки в параметрах - ответ 400;
+     * после начала ответа ошибка может только прервать соединение.
+     */
+    private static void handle(HttpExchange exchange, String method, Handler handler) throws IOException {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        try (exchange) {
+            if (!exchange.getRequestURI().getPath().equals(exchange.getHttpContext().getPath())) {
+                sendError(exchange, 404, "Not found: " + exchange.getRequestURI().getPath());
+                return;
+            }
+            if (!exchange.getRequestMethod().equalsIgnoreCase(method)) {
+                exchange.getResponseHeaders().set("Allow", method);
+                sendError(exchange, 405, "Method not allowed: " + exchange.getRequestMethod());
+                return;
+            }
+
+            Charset charset;
+            Body body;
+            try {
+                charset = requestCharset(exchange.getRequestHeaders().getFirst("Content-Type"));
+                body = handler.open(parseQuery(exchange.getRequestURI().getRawQuery()));
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, e.getMessage());
+                return;
+            }
+
+            Reader reader = new InputStreamReader(exchange.getRequestBody(), charset);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=" + charset.name());
+            // Длина ответа заранее неизвестна - ответ передается частями
+            exchange.sendResponseHeaders(200, 0);
+            Writer writer = new BufferedWriter(
+                    new OutputStreamWriter(exchange.getResponseBody(), charset), BUFFER_SIZE);
+            body.write(reader, writer);
+            writer.flush();
+        } finally {
+            if (Metrics.ENABLED) {
+                Metrics.HTTP_REQUESTS.increment();
+                Metrics.HTTP_REQUEST.recordSince(start);
+            }
+        }
+    }
+
+    private static Body transform(Map<String, String> query, boolean decrypt) {
+        String key = query.get("key");
+        if (key != null) {
+            int[] shifts = VigenereCipher.keyShifts(key, AlphabetSet.DEFAULT);
+            VigenereCipher cipher = decrypt
+                    ? VigenereCipher.decryptor(shifts, AlphabetSet.DEFAULT)
+                    : VigenereCipher.encryptor(shifts, AlphabetSet.DEFAULT);
+            return (reader, writer) -> BatchCli.transform(reader, writer, cipher);
+        }
+        int shift = parseShift(query);
+        return (reader, writer) -> BatchCli.transform(reader, writer, decrypt ? -shift : shift);
+    }
+
+    private static int parseShift(Map<String, String> query) {
+        String value = query.get("shift");
+        if (value == null) {
+            throw new IllegalArgumentException("Parameter shift or key is required");
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid shift: " + value);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int separator = pair.indexOf('=');
+            String name = separator < 0 ? pair : pair.substring(0, separator);
+            String value = separator < 0 ? "" : pair.substring(separator + 1);
+            query.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    private static Charset requestCharset(String contentType) {
+        if (contentType != null) {
+            for (String parameter : contentType.split(";")) {
+                String trimmed = parameter.trim();
+                if (trimmed.toLowerCase(Locale.ROOT).startsWith("charset=")) {
+                    String name = trimmed.substring("charset=".length()).replace("\"", "");
+                    try {
+                        return Charset.forName(name);
+                    } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+                        throw new IllegalArgumentException("Unsupported charset: " + name);
+                    }
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    /**
+     * Обработчик конечной точки: разбирает параметры до отправки заголовков ответа
+     * (IllegalArgumentException - ответ 400) и возвращает обработку тела
+     */
+    private interface Handler {
+        Body open(Map<String, String> query);
+    }
+
+    /**
+     * Потоковая обработка тела запроса в тело ответа
+     */
+    private interface Body {
+        void write(Reader reader, Writer writer) throws IOException;
+    }
+}
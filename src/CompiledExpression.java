@@ -0,0 +1,324 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Скомпилированное математическое выражение.
+ * Хранит постфиксную программу для простой стековой машины: коды операций,
+ * заранее разобранные числа и номера переменных. Объект неизменяем и может
+ * вычисляться многократно и из разных потоков без повторного разбора.
+ */
+public final class CompiledExpression {
+
+    // Коды операций
+    static final byte PUSH = 0;
+    static final byte ADD = 1;
+    static final byte SUBTRACT = 2;
+    static final byte MULTIPLY = 3;
+    static final byte DIVIDE = 4;
+    static final byte LOAD = 5;
+    static final byte NEGATE = 6;
+
+    // Количество строк, обрабатываемых за один шаг пакетного вычисления
+    private static final int BATCH_BLOCK = 1024;
+
+    private static final double[] NO_VALUES = new double[0];
+
+    // Стек вычислений для каждого потока
+    private static final ThreadLocal<double[]> STACK = ThreadLocal.withInitial(() -> new double[16]);
+
+    private final String source;
+    private final byte[] operations;
+    private final double[] constants;
+    private final int[] variableIndexes;
+    private final List<String> variables;
+    private final int maxDepth;
+
+    private CompiledExpression(String source, byte[] operations, double[] constants,
+                               int[] variableIndexes, List<String> variables, int maxDepth) {
+        this.source = source;
+        this.operations = operations;
+        this.constants = constants;
+        this.variableIndexes = variableIndexes;
+        this.variables = variables;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Вычисление выражения без переменных
+     */
+    public double evaluate() {
+        return evaluate(NO_VALUES);
+    }
+
+    /**
+     * Вычисление выражения; значения переменных передаются в порядке getVariables()
+     */
+    public double evaluate(double... values) {
+        if (values.length < variables.size()) {
+            throw new IllegalArgumentException("Missing value for variable: " + variables.get(values.length));
+        }
+        if (Metrics.ENABLED) {
+            Metrics.EXPRESSIONS_EVALUATED.increment();
+        }
+
+        // Стек переиспользуется между вычислениями в одном потоке
+        double[] stack = STACK.get();
+        if (stack.length < maxDepth) {
+            stack = new double[maxDepth];
+            STACK.set(stack);
+        }
+        int top = 0;
+
+        for (int i = 0; i < operations.length; i++) {
+            byte operation = operations[i];
+            switch (operation) {
+                case PUSH:
+                    stack[top++] = constants[i];
+                    break;
+                case LOAD:
+                    stack[top++] = values[variableIndexes[i]];
+                    break;
+                case NEGATE:
+                    stack[top - 1] = -stack[top - 1];
+                    break;
+                default:
+                    double b = stack[--top];
+                    stack[top - 1] = perform(stack[top - 1], b, operation);
+            }
+        }
+
+        return stack[0];
+    }
+
+    /**
+     * Вычисление выражения со значениями переменных по именам
+     */
+    public double evaluate(Map<String, Double> values) {
+        double[] ordered = new double[variables.size()];
+        for (int i = 0; i < ordered.length; i++) {
+            Double value = values.get(variables.get(i));
+            if (value == null) {
+                throw new IllegalArgumentException("Missing value for variable: " + variables.get(i));
+            }
+            ordered[i] = value;
+        }
+        return evaluate(ordered);
+    }
+
+    /**
+     * Пакетное вычисление по столбцам: columns[k][row] - значение k-й переменной
+     * (в порядке getVariables()) для строки row. Результаты записываются в output,
+     * количество строк равно output.length.
+     * Программа выполняется над блоками строк, поэтому внутренние циклы - это
+     * простая арифметика над массивами без выделения памяти на каждую строку.
+     */
+    public void evaluateBatch(double[][] columns, double[] output) {
+        int rows = output.length;
+        if (columns.length < variables.size()) {
+            throw new IllegalArgumentException("Missing column for variable: " + variables.get(columns.length));
+        }
+        for (int k = 0; k < variables.size(); k++) {
+            if (columns[k].length < rows) {
+                throw new IllegalArgumentException("Column is too short for variable: " + variables.get(k));
+            }
+        }
+
+        if (Metrics.ENABLED) {
+            Metrics.EXPRESSIONS_EVALUATED.add(rows);
+        }
+
+        double[][] stack = new double[maxDepth][Math.min(BATCH_BLOCK, rows)];
+        for (int base = 0; base < rows; base += BATCH_BLOCK) {
+            int length = Math.min(BATCH_BLOCK, rows - base);
+            int top = 0;
+
+            for (int i = 0; i < operations.length; i++) {
+                byte operation = operations[i];
+                switch (operation) {
+                    case PUSH:
+                        Arrays.fill(stack[top++], 0, length, constants[i]);
+                        break;
+                    case LOAD:
+                        System.arraycopy(columns[variableIndexes[i]], base, stack[top++], 0, length);
+                        break;
+                    case NEGATE:
+                        negate(stack[top - 1], length);
+                        break;
+                    default:
+                        top--;
+                        performBatch(stack[top - 1], stack[top], length, operation);
+                }
+            }
+
+            System.arraycopy(stack[0], 0, output, base, length);
+        }
+    }
+
+    /**
+     * Пакетное вычисление по столбцам, заданным именами переменных
+     */
+    public void evaluateBatch(Map<String, double[]> columns, double[] output) {
+        double[][] ordered = new double[variables.size()][];
+        for (int i = 0; i < ordered.length; i++) {
+            ordered[i] = columns.get(variables.get(i));
+            if (ordered[i] == null) {
+                throw new IllegalArgumentException("Missing column for variable: " + variables.get(i));
+            }
+        }
+        evaluateBatch(ordered, output);
+    }
+
+    /**
+     * Имена переменных в порядке первого появления
+     */
+    public List<String> getVariables() {
+        return variables;
+    }
+
+    /**
+     * Исходный текст выражения
+     */
+    public String getSource() {
+        return source;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    private static double perform(double a, double b, byte operation) {
+        switch (operation) {
+            case ADD:
+                return a + b;
+            case SUBTRACT:
+                return a - b;
+            case MULTIPLY:
+                return a * b;
+            case DIVIDE:
+                if (b == 0) {
+                    throw new ArithmeticException("Division into zero!");
+                }
+                return a / b;
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + operation);
+        }
+    }
+
+    /**
+     * Операция над блоком: a[i] = a[i] op b[i]
+     */
+    private static void performBatch(double[] a, double[] b, int length, byte operation) {
+        switch (operation) {
+            case ADD:
+                for (int i = 0; i < length; i++) {
+                    a[i] += b[i];
+                }
+                break;
+            case SUBTRACT:
+                for (int i = 0; i < length; i++) {
+                    a[i] -= b[i];
+                }
+                break;
+            case MULTIPLY:
+                for (int i = 0; i < length; i++) {
+                    a[i] *= b[i];
+                }
+                break;
+            case DIVIDE:
+                for (int i = 0; i < length; i++) {
+                    if (b[i] == 0) {
+                        throw new ArithmeticException("Division into zero!");
+                    }
+                }
+                for (int i = 0; i < length; i++) {
+                    a[i] /= b[i];
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + operation);
+        }
+    }
+
+    private static void negate(double[] a, int length) {
+        for (int i = 0; i < length; i++) {
+            a[i] = -a[i];
+        }
+    }
+
+    /**
+     * Построение программы в постфиксном порядке с проверкой корректности.
+     * Переменные нумеруются в порядке первого появления в выражении.
+     */
+    static final class Builder {
+        private byte[] operations;
+        private double[] constants;
+        private int[] variableIndexes;
+        private final List<String> variables = new ArrayList<>();
+        private int size;
+        private int depth;
+        private int maxDepth;
+
+        Builder(int capacity) {
+            operations = new byte[Math.max(capacity, 1)];
+            constants = new double[operations.length];
+            variableIndexes = new int[operations.length];
+        }
+
+        void constant(double value) {
+            constants[size] = value;
+            push(PUSH);
+        }
+
+        void variable(String name) {
+            int index = variables.indexOf(name);
+            if (index < 0) {
+                index = variables.size();
+                variables.add(name);
+            }
+            variableIndexes[size] = index;
+            push(LOAD);
+        }
+
+        void operation(byte operation) {
+            if (operation == NEGATE) {
+                if (depth < 1) {
+                    throw new IllegalArgumentException("Incorrect expression");
+                }
+            } else {
+                if (depth < 2) {
+                    throw new IllegalArgumentException("Incorrect expression");
+                }
+                depth--;
+            }
+            append(operation);
+        }
+
+        CompiledExpression build(String source) {
+            if (depth != 1) {
+                throw new IllegalArgumentException("Incorrect expression");
+            }
+            return new CompiledExpression(source, Arrays.copyOf(operations, size),
+                    Arrays.copyOf(constants, size), Arrays.copyOf(variableIndexes, size),
+                    Collections.unmodifiableList(variables), maxDepth);
+        }
+
+        private void push(byte operation) {
+            depth++;
+            maxDepth = Math.max(maxDepth, depth);
+            append(operation);
+        }
+
+        private void append(byte operation) {
+            if (size == operations.length) {
+                operations = Arrays.copyOf(operations, size * 2);
+                constants = Arrays.copyOf(constants, size * 2);
+                variableIndexes = Arrays.copyOf(variableIndexes, size * 2);
+            }
+            operations[size++] = operation;
+        }
+    }
+}
@@ -2,158 +2,308 @@ import java.util.*;
 
 public class ExpressionEvaluator {
     
+    // Открывающая скобка в стеке операторов
+    private static final byte LEFT_PARENTHESIS = -1;
+    
+    // Числа с большим количеством цифр разбираются через Double.parseDouble
+    private static final int MAX_EXACT_DIGITS = 15;
+    
+    // Степени 10, точно представимые в double
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    
+    // Максимальное количество скомпилированных выражений в кэше
+    private static final int CACHE_SIZE = 4096;
+    
+    // Кэш скомпилированных выражений (вытеснение давно не использованных)
+    private static final Map<String, CompiledExpression> CACHE = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CompiledExpression> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    
     /**
      * Вычисление математического выражения
      */
     public static double evaluate(String expression) {
+        return compile(expression).evaluate();
+    }
+    
+    /**
+     * Вычисление выражения с переменными
+     */
+    public static double evaluate(String expression, Map<String, Double> variables) {
+        return compile(expression).evaluate(variables);
+    }
+    
+    /**
+     * Компиляция выражения для многократного вычисления.
+     * Повторная компиляция того же текста берет результат из кэша.
+     */
+    public static CompiledExpression compile(String expression) {
         if (expression == null || expression.trim().isEmpty()) {
             throw new IllegalArgumentException("Expression cannot be empty");
         }
         
-        // Убираем пробелы
-        expression = expression.replaceAll("\\s+", "");
+        synchronized (CACHE) {
+            CompiledExpression compiled = CACHE.get(expression);
+            if (compiled != null) {
+                if (Metrics.ENABLED) {
+                    Metrics.EXPRESSION_CACHE_HITS.increment();
+                }
+                return compiled;
+            }
+        }
         
-        // Преобразуем в постфиксную нотацию и вычисляем
-        List<String> postfix = convertToPostfix(expression);
-        return evaluatePostfix(postfix);
+        long start = 0;
+        if (Metrics.ENABLED) {
+            Metrics.EXPRESSION_CACHE_MISSES.increment();
+            start = System.nanoTime();
+        }
+        CompiledExpression compiled = compileUncached(expression);
+        if (Metrics.ENABLED) {
+            Metrics.EXPRESSIONS_COMPILED.increment();
+            Metrics.EXPRESSION_COMPILATION.recordSince(start);
+        }
+        synchronized (CACHE) {
+            CACHE.put(expression, compiled);
+        }
+        return compiled;
     }
     
     /**
-     * Преобразование в постфиксную нотацию (алгоритм Dijkstra)
+     * Компиляция выражения без обращения к кэшу.
+     * Один проход по тексту (алгоритм Dijkstra): числа разбираются прямо из
+     * строки, операторы хранятся в массиве байтов, а постфиксная программа
+     * строится сразу, без промежуточного списка токенов.
+     * Пробельные символы игнорируются, как если бы их удалили из текста.
      */
-    private static List<String> convertToPostfix(String expression) {
-        List<String> output = new ArrayList<>();
-        Stack<String> operators = new Stack<>();
+    private static CompiledExpression compileUncached(String expression) {
+        CompiledExpression.Builder program = new CompiledExpression.Builder(expression.length());
+        byte[] operators = new byte[expression.length()];
+        int top = 0;
         
-        int i = 0;
-        while (i < expression.length()) {
+        int length = expression.length();
+        int i = skipWhitespace(expression, 0);
+        while (i < length) {
             char c = expression.charAt(i);
             
-            // Если число (включая отрицательные и десятичные)
-            if (Character.isDigit(c) || (c == '-' && isStartOfNumber(expression, i))) {
-                StringBuilder number = new StringBuilder();
-                
-                // Обработка отрицательного числа
-                if (c == '-') {
-                    number.append(c);
-                    i++;
-                    c = expression.charAt(i);
+            if (c == '-' && isStartOfNumber(expression, i)) {
+                // Унарный минус перед переменной или скобкой
+                int next = skipWhitespace(expression, i + 1);
+                if (next < length && (isIdentifierStart(expression.charAt(next)) || expression.charAt(next) == '(')) {
+                    operators[top++] = CompiledExpression.NEGATE;
+                    i = next;
+                    continue;
                 }
                 
-                // Считываем число
-                while (i < expression.length() && (Character.isDigit(expression.charAt(i)) || expression.charAt(i) == '.')) {
-                    number.append(expression.charAt(i));
-                    i++;
-                }
-                output.add(number.toString());
+                // Отрицательное число
+                i = readNumber(expression, i, program);
+                continue;
+            }
+            
+            // Переменная
+            if (isIdentifierStart(c)) {
+                i = readIdentifier(expression, i, program);
+                continue;
+            }
+            
+            // Число (включая десятичные)
+            if (Character.isDigit(c)) {
+                i = readNumber(expression, i, program);
                 continue;
             }
             
             // Открывающая скобка
             if (c == '(') {
-                operators.push(String.valueOf(c));
+                operators[top++] = LEFT_PARENTHESIS;
             }
             // Закрывающая скобка
             else if (c == ')') {
-                while (!operators.isEmpty() && !operators.peek().equals("(")) {
-                    output.add(operators.pop());
+                while (top > 0 && operators[top - 1] != LEFT_PARENTHESIS) {
+                    program.operation(operators[--top]);
                 }
-                if (!operators.isEmpty()) {
-                    operators.pop(); // Убираем "("
+                if (top > 0) {
+                    top--; // Убираем "("
                 }
             }
             // Оператор
             else if (isOperator(c)) {
-                String operator = String.valueOf(c);
-                while (!operators.isEmpty() && !operators.peek().equals("(") &&
-                       getPrecedence(operators.peek()) >= getPrecedence(operator)) {
-                    output.add(operators.pop());
+                byte operator = toOperation(c);
+                while (top > 0 && operators[top - 1] != LEFT_PARENTHESIS &&
+                       getPrecedence(operators[top - 1]) >= getPrecedence(operator)) {
+                    program.operation(operators[--top]);
                 }
-                operators.push(operator);
+                operators[top++] = operator;
             }
             
-            i++;
+            i = skipWhitespace(expression, i + 1);
         }
         
         // Добавляем оставшиеся операторы
-        while (!operators.isEmpty()) {
-            output.add(operators.pop());
+        while (top > 0) {
+            byte operator = operators[--top];
+            if (operator == LEFT_PARENTHESIS) {
+                throw new IllegalArgumentException("Inappropriate number: (");
+            }
+            program.operation(operator);
         }
         
-        return output;
+        return program.build(expression);
     }
     
     /**
-     * Вычисление постфиксного выражения
+     * Чтение числа, начинающегося с позиции start (цифра или минус).
+     * Числа, точно представимые как целое, деленное на степень 10,
+     * вычисляются без создания строк; остальные разбираются Double.parseDouble.
      */
-    private static double evaluatePostfix(List<String> postfix) {
-        Stack<Double> stack = new Stack<>();
+    private static int readNumber(String expression, int start, CompiledExpression.Builder program) {
+        int length = expression.length();
+        int i = start;
+        boolean negative = expression.charAt(i) == '-';
+        if (negative) {
+            i = skipWhitespace(expression, i + 1);
+        }
         
-        for (String token : postfix) {
-            if (isOperator(token.charAt(0)) && token.length() == 1) {
-                if (stack.size() < 2) {
-                    throw new IllegalArgumentException("Incorrect expression");
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        int dots = 0;
+        boolean simple = true;
+        while (i < length) {
+            char c = expression.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (digits < MAX_EXACT_DIGITS) {
+                    mantissa = mantissa * 10 + (c - '0');
                 }
-                
-                double b = stack.pop();
-                double a = stack.pop();
-                double result = performOperation(a, b, token.charAt(0));
-                stack.push(result);
-            } else {
-                try {
-                    stack.push(Double.parseDouble(token));
-                } catch (NumberFormatException e) {
-                    throw new IllegalArgumentException("Inappropriate number: " + token);
+                digits++;
+                if (dots > 0) {
+                    fractionDigits++;
                 }
+            } else if (c == '.') {
+                dots++;
+            } else if (Character.isDigit(c)) {
+                simple = false;
+            } else {
+                break;
             }
+            i = skipWhitespace(expression, i + 1);
         }
         
-        if (stack.size() != 1) {
-            throw new IllegalArgumentException("Incorrect expression");
+        if (digits == 0 && dots == 0 && simple) {
+            // Одиночный минус без числа считается оператором, в конце выражения - ошибка
+            if (i == length) {
+                throw new IllegalArgumentException("Incorrect expression");
+            }
+            program.operation(CompiledExpression.SUBTRACT);
+        } else if (simple && dots <= 1 && digits > 0 && digits <= MAX_EXACT_DIGITS
+                   && fractionDigits < POWERS_OF_TEN.length) {
+            double value = mantissa / POWERS_OF_TEN[fractionDigits];
+            program.constant(negative ? -value : value);
+        } else {
+            String token = stripWhitespace(expression, start, i);
+            try {
+                program.constant(Double.parseDouble(token));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Inappropriate number: " + token);
+            }
         }
-        
-        return stack.pop();
+        return i;
     }
     
     /**
-     * Выполнение арифметической операции
+     * Чтение имени переменной, начинающегося с позиции start
      */
-    private static double performOperation(double a, double b, char operator) {
-        switch (operator) {
+    private static int readIdentifier(String expression, int start, CompiledExpression.Builder program) {
+        int i = start;
+        while (i < expression.length() && isIdentifierPart(expression.charAt(i))) {
+            i = skipWhitespace(expression, i + 1);
+        }
+        program.variable(stripWhitespace(expression, start, i));
+        return i;
+    }
+    
+    /**
+     * Пропуск пробельных символов (тех же, что \s в регулярных выражениях)
+     */
+    private static int skipWhitespace(String expression, int index) {
+        while (index < expression.length() && isWhitespace(expression.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+    
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+    
+    /**
+     * Фрагмент текста без пробельных символов
+     */
+    private static String stripWhitespace(String expression, int start, int end) {
+        StringBuilder token = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = expression.charAt(i);
+            if (!isWhitespace(c)) {
+                token.append(c);
+            }
+        }
+        return token.toString();
+    }
+    
+    /**
+     * Проверка, является ли символ оператором
+     */
+    private static boolean isOperator(char c) {
+        return c == '+' || c == '-' || c == '*' || c == '/';
+    }
+    
+    /**
+     * Код операции для символа оператора
+     */
+    private static byte toOperation(char c) {
+        switch (c) {
             case '+':
-                return a + b;
+                return CompiledExpression.ADD;
             case '-':
-                return a - b;
+                return CompiledExpression.SUBTRACT;
             case '*':
-                return a * b;
-            case '/':
-                if (b == 0) {
-                    throw new ArithmeticException("Division into zero!");
-                }
-                return a / b;
+                return CompiledExpression.MULTIPLY;
             default:
-                throw new IllegalArgumentException("Unknown operator: " + operator);
+                return CompiledExpression.DIVIDE;
         }
     }
     
     /**
-     * Проверка, является ли символ оператором
+     * Проверка, может ли символ начинать имя переменной
      */
-    private static boolean isOperator(char c) {
-        return c == '+' || c == '-' || c == '*' || c == '/';
+    private static boolean isIdentifierStart(char c) {
+        return Character.isLetter(c) || c == '_';
+    }
+    
+    /**
+     * Проверка, может ли символ входить в имя переменной
+     */
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
     }
     
     /**
      * Получение приоритета оператора
      */
-    private static int getPrecedence(String operator) {
+    private static int getPrecedence(byte operator) {
         switch (operator) {
-            case "+":
-            case "-":
+            case CompiledExpression.ADD:
+            case CompiledExpression.SUBTRACT:
                 return 1;
-            case "*":
-            case "/":
+            case CompiledExpression.MULTIPLY:
+            case CompiledExpression.DIVIDE:
                 return 2;
+            case CompiledExpression.NEGATE:
+                return 3;
             default:
                 return 0;
         }
@@ -161,11 +311,16 @@ public class ExpressionEvaluator {
     
     /**
      * Проверка, является ли минус началом отрицательного числа
+     * (учитывается предыдущий непробельный символ)
      */
     private static boolean isStartOfNumber(String expression, int index) {
-        if (index == 0) return true;
+        int previous = index - 1;
+        while (previous >= 0 && isWhitespace(expression.charAt(previous))) {
+            previous--;
+        }
+        if (previous < 0) return true;
         
-        char prevChar = expression.charAt(index - 1);
+        char prevChar = expression.charAt(previous);
         return prevChar == '(' || isOperator(prevChar);
     }
     
@@ -181,7 +336,8 @@ public class ExpressionEvaluator {
             "2 * (3 + 4) - 1",
             "-5 + 3",
             "10 / 2 + 3 * 4",
-            "(2 + 3) * (4 - 1)"
+            "(2 + 3) * (4 - 1)",
+            "-(2 + 3) * 4"
         };
         
         for (String test : tests) {
@@ -192,5 +348,14 @@ public class ExpressionEvaluator {
                 System.out.println(test + " = Error: " + e.getMessage());
             }
         }
+        
+        // Пакетное вычисление по столбцам значений переменных
+        CompiledExpression formula = compile("price * (1 - discount) + shipping");
+        double[] price = {100, 250, 40};
+        double[] discount = {0.1, 0.2, 0};
+        double[] shipping = {5, 0, 7.5};
+        double[] results = new double[price.length];
+        formula.evaluateBatch(new double[][] {price, discount, shipping}, results);
+        System.out.println(formula + " = " + Arrays.toString(results));
     }
 }
\ No newline at end of file
@@ -1,9 +1,24 @@
 import java.io.*;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.*;
 import java.nio.file.*;
 
 public class FileHandler {
     
+    // Размер блока для потоковой обработки файлов
+    private static final int CHUNK_SIZE = 64 * 1024;
+    
+    // Размер окна отображения файла в память
+    private static final long MAPPING_WINDOW = 256L * 1024 * 1024;
+    
+    // Размер фрагмента файла для предпросмотра
+    private static final int PREVIEW_BYTES = 4 * 1024;
+    
     /**
      * Чтение текста из файла с поддержкой UTF-8
      */
@@ -18,50 +33,238 @@ public class FileHandler {
             throw new IOException("Файл недоступен для чтения: " + filePath);
         }
         
-        // Попытка определить кодировку и чтение файла
+        // Кодировка определяется по байтам, декодирование выполняется один раз
         byte[] bytes = Files.readAllBytes(path);
+        if (Metrics.ENABLED) {
+            Metrics.FILE_BYTES_READ.add(bytes.length);
+        }
+        return decode(bytes, true);
+    }
+    
+    /**
+     * Чтение начала файла для предпросмотра без загрузки всего файла
+     */
+    public static String readPreview(String filePath, int maxChars) throws IOException {
+        byte[] bytes;
+        try (InputStream in = Files.newInputStream(Paths.get(filePath))) {
+            bytes = in.readNBytes(PREVIEW_BYTES);
+        }
+        if (Metrics.ENABLED) {
+            Metrics.FILE_BYTES_READ.add(bytes.length);
+        }
+        String content = decode(bytes, bytes.length < PREVIEW_BYTES);
+        return content.length() > maxChars ? content.substring(0, maxChars) + "..." : content;
+    }
+    
+    /**
+     * Определение кодировки файла без его декодирования
+     */
+    public static CharsetDetector.Detection detectCharset(Path path) throws IOException {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        CharsetDetector.Detection detection = CharsetDetector.detect(path);
+        if (Metrics.ENABLED) {
+            Metrics.CHARSET_DETECTION.recordSince(start);
+        }
+        return detection;
+    }
+    
+    /**
+     * Декодирование байтов в определенной кодировке (без метки BOM)
+     */
+    private static String decode(byte[] bytes, boolean complete) {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        CharsetDetector.Detection detection = CharsetDetector.detect(bytes, bytes.length, complete);
+        if (Metrics.ENABLED) {
+            Metrics.CHARSET_DETECTION.recordSince(start);
+        }
+        return new String(bytes, detection.bomLength, bytes.length - detection.bomLength, detection.charset);
+    }
+    
+    /**
+     * Потоковое шифрование файла в файл
+     */
+    public static long encryptFile(Path input, Path output, int shift, Charset charset) throws IOException {
+        return transformFile(input, output, shift, charset);
+    }
+    
+    /**
+     * Потоковое дешифрование файла в файл
+     */
+    public static long decryptFile(Path input, Path output, int shift, Charset charset) throws IOException {
+        return transformFile(input, output, -shift, charset);
+    }
+    
+    /**
+     * Потоковый сдвиг содержимого файла с записью результата в файл.
+     * Возвращает количество обработанных символов.
+     */
+    public static long transformFile(Path input, Path output, int shift, Charset charset) throws IOException {
+        try (FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            return transformFile(input, out, shift, charset);
+        }
+    }
+    
+    /**
+     * Потоковый сдвиг содержимого файла с записью результата в канал.
+     * Файл читается блоками фиксированного размера, поэтому расход памяти
+     * не зависит от размера файла. Многобайтовые последовательности и
+     * суррогатные пары на границе блоков переносятся в следующий блок.
+     */
+    public static long transformFile(Path input, WritableByteChannel output, int shift, Charset charset) throws IOException {
+        long startTime = Metrics.ENABLED ? System.nanoTime() : 0;
+        CipherEngine engine = CipherEngine.forShift(shift);
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharsetEncoder encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
         
-        // Пробуем разные кодировки
-        String[] encodings = {"UTF-8", "UTF-16", "Windows-1251", "CP1252"};
+        // Буфер символов вмещает целиком декодированный блок и перенесенный хвост
+        ByteBuffer inBytes = ByteBuffer.allocate(CHUNK_SIZE);
+        CharBuffer chars = CharBuffer.allocate((int) Math.ceil(CHUNK_SIZE * decoder.maxCharsPerByte()) + 2);
+        ByteBuffer outBytes = ByteBuffer.allocate((int) Math.ceil(CHUNK_SIZE * encoder.maxBytesPerChar()));
+        long processed = 0;
         
-        for (String encoding : encodings) {
-            try {
-                String content = new String(bytes, encoding);
-                // Проверяем, содержит ли текст читаемые символы
-                if (isReadableText(content)) {
-                    return content;
+        try (ReadableByteChannel in = Files.newByteChannel(input)) {
+            boolean endOfInput = false;
+            while (!endOfInput) {
+                int read = in.read(inBytes);
+                endOfInput = read == -1;
+                if (Metrics.ENABLED && read > 0) {
+                    Metrics.FILE_BYTES_READ.add(read);
+                }
+                inBytes.flip();
+                
+                // Декодируем новый блок; незавершенная последовательность байтов
+                // остается в буфере до следующего чтения
+                int start = chars.position();
+                checkResult(decoder.decode(inBytes, chars, endOfInput));
+                if (endOfInput) {
+                    checkResult(decoder.flush(chars));
                 }
-            } catch (Exception e) {
-                // Пробуем следующую кодировку
+                inBytes.compact();
+                
+                // Сдвигаем только что декодированные символы
+                engine.apply(chars.array(), start, chars.array(), start, chars.position() - start);
+                processed += chars.position() - start;
+                
+                chars.flip();
+                encodeAndWrite(encoder, chars, outBytes, output, endOfInput);
+                chars.compact();
             }
         }
         
-        // Если ничего не подошло, используем UTF-8 по умолчанию
-        return new String(bytes, StandardCharsets.UTF_8);
+        if (Metrics.ENABLED) {
+            Metrics.FILE_TRANSFORM.recordSince(startTime);
+        }
+        return processed;
     }
     
     /**
-     * Проверка, является ли текст читаемым
+     * Сдвиг файла в однобайтовой кодировке через отображение в память.
+     * Байты заменяются по таблице без декодирования в строки. Если файл в UTF-8
+     * содержит не только ASCII, он обрабатывается потоковым методом; это
+     * проверяется до открытия выходного файла, поэтому выходной файл не
+     * обрезается повторно, пока он отображен в память.
+     * Возвращает количество обработанных байтов входного файла.
      */
-    private static boolean isReadableText(String text) {
-        if (text == null || text.trim().isEmpty()) {
-            return false;
+    public static long transformFileMapped(Path input, Path output, int shift, Charset charset) throws IOException {
+        if (!ByteCipher.isSupported(charset)) {
+            transformFile(input, output, shift, charset);
+            return Files.size(input);
         }
+        ByteCipher cipher = ByteCipher.forShift(charset, shift);
+        long startTime = Metrics.ENABLED ? System.nanoTime() : 0;
         
-        // Подсчитываем количество печатных символов
-        int printableChars = 0;
-        int totalChars = 0;
-        
-        for (char c : text.toCharArray()) {
-            totalChars++;
-            if (Character.isLetterOrDigit(c) || Character.isWhitespace(c) || 
-                ".,!?;:-()[]{}\"'".indexOf(c) >= 0) {
-                printableChars++;
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ)) {
+            long size = in.size();
+            if (cipher.isAsciiOnly() && containsNonAscii(in, size)) {
+                // Многобайтовые символы UTF-8 нельзя сдвинуть по байтовой таблице
+                transformFile(input, output, shift, charset);
+                return size;
             }
+            try (FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (long position = 0; position < size; position += MAPPING_WINDOW) {
+                    int length = (int) Math.min(MAPPING_WINDOW, size - position);
+                    MappedByteBuffer source = in.map(FileChannel.MapMode.READ_ONLY, position, length);
+                    MappedByteBuffer target = out.map(FileChannel.MapMode.READ_WRITE, position, length);
+                    cipher.apply(source, 0, target, 0, length);
+                }
+            }
+            if (Metrics.ENABLED) {
+                Metrics.FILE_BYTES_READ.add(size);
+                Metrics.FILE_TRANSFORM.recordSince(startTime);
+            }
+            return size;
+        }
+    }
+    
+    /**
+     * Есть ли в файле байты больше 0x7F (просмотр отображения только для чтения,
+     * по восемь байтов за раз)
+     */
+    private static boolean containsNonAscii(FileChannel in, long size) throws IOException {
+        for (long position = 0; position < size; position += MAPPING_WINDOW) {
+            int length = (int) Math.min(MAPPING_WINDOW, size - position);
+            MappedByteBuffer source = in.map(FileChannel.MapMode.READ_ONLY, position, length);
+            int i = 0;
+            for (; i + Long.BYTES <= length; i += Long.BYTES) {
+                if ((source.getLong(i) & 0x8080808080808080L) != 0) {
+                    return true;
+                }
+            }
+            for (; i < length; i++) {
+                if (source.get(i) < 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Кодирование символов и запись в канал
+     */
+    private static void encodeAndWrite(CharsetEncoder encoder, CharBuffer chars, ByteBuffer outBytes,
+                                       WritableByteChannel output, boolean endOfInput) throws IOException {
+        while (true) {
+            CoderResult result = encoder.encode(chars, outBytes, endOfInput);
+            if (result.isOverflow()) {
+                writeFully(outBytes, output);
+                continue;
+            }
+            checkResult(result);
+            break;
+        }
+        if (endOfInput) {
+            while (encoder.flush(outBytes).isOverflow()) {
+                writeFully(outBytes, output);
+            }
+        }
+        writeFully(outBytes, output);
+    }
+    
+    /**
+     * Запись всего содержимого буфера в канал
+     */
+    private static void writeFully(ByteBuffer buffer, WritableByteChannel output) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            output.write(buffer);
+        }
+        buffer.clear();
+    }
+    
+    /**
+     * Проверка результата кодирования/декодирования
+     */
+    private static void checkResult(CoderResult result) throws CharacterCodingException {
+        if (result.isError()) {
+            result.throwException();
         }
-        
-        // Если более 80% символов печатные, считаем текст читаемым
-        return totalChars > 0 && (double) printableChars / totalChars > 0.8;
     }
     
     /**
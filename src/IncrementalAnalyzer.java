@@ -0,0 +1,148 @@
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Анализ сдвига по частям текста, поступающим постепенно (из сокета,
+ * из читаемого файла). Гистограммы букв и триграмм накапливаются между
+ * вызовами update, а триграммы на стыке частей продолжаются, поэтому
+ * результат совпадает с анализом всего текста одной строкой. Память
+ * не зависит от длины текста: хранятся только гистограммы ShiftScorer.
+ *
+ * Ответ доступен в любой момент (currentBest, topN); уверенность
+ * показывает, достаточно ли уже прочитанного текста. Объект не
+ * потокобезопасен: каждый поток ведет свой анализатор, а результаты
+ * объединяются методом merge.
+ */
+public final class IncrementalAnalyzer {
+
+    private final ShiftScorer scorer;
+    private long charCount;
+
+    /**
+     * Анализатор для английского и русского алфавитов
+     */
+    public IncrementalAnalyzer() {
+        this(AlphabetSet.DEFAULT);
+    }
+
+    /**
+     * Анализатор для заданного набора алфавитов
+     */
+    public IncrementalAnalyzer(AlphabetSet alphabets) {
+        this.scorer = new ShiftScorer(alphabets);
+    }
+
+    /**
+     * Добавление следующей части текста
+     */
+    public IncrementalAnalyzer update(CharSequence text) {
+        scorer.accept(text, 0, text.length());
+        charCount += text.length();
+        return this;
+    }
+
+    /**
+     * Добавление оставшихся символов буфера; позиция буфера переходит в конец
+     */
+    public IncrementalAnalyzer update(CharBuffer buffer) {
+        int length = buffer.remaining();
+        if (buffer.hasArray()) {
+            scorer.accept(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+        } else {
+            scorer.accept(buffer, 0, length);
+        }
+        buffer.position(buffer.limit());
+        charCount += length;
+        return this;
+    }
+
+    /**
+     * Добавление фрагмента массива символов
+     */
+    public IncrementalAnalyzer update(char[] chars, int offset, int length) {
+        scorer.accept(chars, offset, length);
+        charCount += length;
+        return this;
+    }
+
+    /**
+     * Объединение с анализатором другой части текста (например, из другого потока).
+     * Триграммы на стыке частей не учитываются; другой анализатор не меняется.
+     */
+    public IncrementalAnalyzer merge(IncrementalAnalyzer other) {
+        scorer.merge(other.scorer);
+        charCount += other.charCount;
+        return this;
+    }
+
+    /**
+     * Очистка для анализа нового текста
+     */
+    public void reset() {
+        scorer.reset();
+        charCount = 0;
+    }
+
+    /**
+     * Количество обработанных символов
+     */
+    public long charCount() {
+        return charCount;
+    }
+
+    /**
+     * Количество учтенных букв
+     */
+    public long letterCount() {
+        return scorer.letterCount();
+    }
+
+    /**
+     * Язык текста по уже обработанной части
+     */
+    public String language() {
+        return scorer.language();
+    }
+
+    /**
+     * Лучший сдвиг по уже обработанной части с уверенностью (отрыв от второго места);
+     * выбор сдвига совпадает с Analyzer.findBestShift для всего текста
+     */
+    public Analyzer.ShiftGuess currentBest() {
+        return Analyzer.guess(scorer, (int) Math.min(charCount, Integer.MAX_VALUE), false);
+    }
+
+    /**
+     * Первые n сдвигов по убыванию оценки
+     */
+    public List<Candidate> topN(int n) {
+        String language = scorer.language();
+        ShiftCache.Ranking ranking = new ShiftCache.Ranking(language, scorer.alphabets(),
+                scorer.scores(language, scorer.shiftCount(language)));
+        List<Candidate> candidates = new ArrayList<>();
+        for (int i = 0; i < Math.min(n, ranking.size()); i++) {
+            int shift = ranking.shift(i);
+            candidates.add(new Candidate(shift, ranking.score(shift)));
+        }
+        return candidates;
+    }
+
+    /**
+     * Сдвиг с оценкой
+     */
+    public static class Candidate {
+        public final int shift;
+        public final double score;
+
+        public Candidate(int shift, double score) {
+            this.shift = shift;
+            this.score = score;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Shift %d (Score: %.3f)", shift, score);
+        }
+    }
+}
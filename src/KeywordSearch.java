@@ -0,0 +1,356 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Поиск ключевых слов открытого текста прямо в шифртексте Цезаря без дешифрования.
+ * Каждое слово шифруется всеми сдвигами, и все варианты собираются в один автомат
+ * Ахо-Корасик, поэтому текст просматривается один раз при любом количестве слов
+ * и сдвигов. Совпадение сообщает слово, позицию и сдвиг, которым зашифрован текст.
+ *
+ * Буквы алфавитов набора сравниваются без учета регистра (шифр сохраняет регистр),
+ * прочие символы слова - точно. Бор строится на списках потомков; если таблица
+ * переходов всех состояний по всем символам не больше DENSE_LIMIT, автомат
+ * делается детерминированным и обработка символа - чтение из таблицы, иначе
+ * переходы ищутся по спискам потомков и суффиксным ссылкам.
+ * Объект неизменяем и может использоваться из нескольких потоков.
+ */
+public final class KeywordSearch {
+
+    // Символ автомата для символов, не встречающихся в словах
+    private static final int OTHER = 0;
+
+    // Наибольший размер плотной таблицы переходов (в элементах int)
+    private static final int DENSE_LIMIT = 1 << 24;
+
+    private final String[] keywords;
+
+    // Номер символа автомата для каждого символа UTF-16
+    private final char[] symbols = new char[Character.MAX_VALUE + 1];
+    private final int symbolCount;
+
+    // Переходы: next[state * symbolCount + symbol] или null, если таблица слишком велика
+    private final int[] next;
+
+    // Бор для поиска без таблицы: потомки состояния - односвязный список
+    // (первый потомок, следующий брат, символ перехода), суффиксные ссылки
+    // и плотная строка переходов корня
+    private final int[] firstChild;
+    private final int[] nextSibling;
+    private final int[] edgeSymbol;
+    private final int[] fail;
+    private final int[] rootNext;
+
+    // Варианты слов, заканчивающиеся в состоянии (с учетом суффиксных ссылок), или null
+    private final int[][] outputs;
+
+    // Варианты слов: номер слова, сдвиг и длина
+    private final int[] patternKeyword;
+    private final int[] patternShift;
+    private final int[] patternLength;
+
+    /**
+     * Поиск слов для английского и русского алфавитов
+     */
+    public KeywordSearch(Collection<String> keywords) {
+        this(keywords, AlphabetSet.DEFAULT);
+    }
+
+    /**
+     * Поиск слов для заданного набора алфавитов
+     */
+    public KeywordSearch(Collection<String> keywords, AlphabetSet alphabets) {
+        if (keywords.isEmpty()) {
+            throw new IllegalArgumentException("No keywords");
+        }
+        this.keywords = keywords.toArray(new String[0]);
+
+        // Буквы одного кода в обоих регистрах получают один символ автомата
+        Map<Integer, Character> letterSymbols = new HashMap<>();
+        int count = 1;
+        for (int i = 0; i < alphabets.range(); i++) {
+            char c = (char) (alphabets.firstChar() + i);
+            int code = alphabets.code(c);
+            if (code >= 0) {
+                Character symbol = letterSymbols.get(code);
+                if (symbol == null) {
+                    symbol = (char) count++;
+                    letterSymbols.put(code, symbol);
+                }
+                symbols[c] = symbol;
+            }
+        }
+
+        // Все сдвиги каждого слова
+        List<String> patterns = new ArrayList<>();
+        List<int[]> patternInfo = new ArrayList<>();
+        for (int k = 0; k < this.keywords.length; k++) {
+            String keyword = this.keywords[k];
+            if (keyword.isEmpty()) {
+                throw new IllegalArgumentException("Keyword is empty");
+            }
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = keyword.charAt(i);
+                if (symbols[c] == OTHER) {
+                    symbols[c] = (char) count++;
+                }
+            }
+            Set<String> seen = new HashSet<>();
+            int rotations = rotations(keyword, alphabets);
+            for (int shift = 0; shift < rotations; shift++) {
+                String encrypted = CipherEngine.forShift(alphabets, shift).apply(keyword);
+                if (seen.add(encrypted)) {
+                    patterns.add(encrypted);
+                    patternInfo.add(new int[] {k, shift});
+                }
+            }
+        }
+        this.symbolCount = count;
+
+        int patternCount = patterns.size();
+        patternKeyword = new int[patternCount];
+        patternShift = new int[patternCount];
+        patternLength = new int[patternCount];
+
+        // Бор вариантов: потомки состояния хранятся списком (-1 - конец списка)
+        int capacity = 1;
+        for (String pattern : patterns) {
+            capacity = Math.addExact(capacity, pattern.length());
+        }
+        int[] firstChild = new int[capacity];
+        int[] nextSibling = new int[capacity];
+        int[] edgeSymbol = new int[capacity];
+        Arrays.fill(firstChild, -1);
+        List<List<Integer>> ends = new ArrayList<>();
+        ends.add(null);
+        int states = 1;
+        for (int p = 0; p < patternCount; p++) {
+            String pattern = patterns.get(p);
+            patternKeyword[p] = patternInfo.get(p)[0];
+            patternShift[p] = patternInfo.get(p)[1];
+            patternLength[p] = pattern.length();
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                int symbol = symbols[pattern.charAt(i)];
+                int child = child(firstChild, nextSibling, edgeSymbol, state, symbol);
+                if (child < 0) {
+                    child = states++;
+                    edgeSymbol[child] = symbol;
+                    nextSibling[child] = firstChild[state];
+                    firstChild[state] = child;
+                    ends.add(null);
+                }
+                state = child;
+            }
+            if (ends.get(state) == null) {
+                ends.set(state, new ArrayList<>());
+            }
+            ends.get(state).add(p);
+        }
+
+        // Суффиксные ссылки обходом в ширину; отсутствующие переходы берутся у ссылки
+        long tableSize = (long) states * symbolCount;
+        boolean dense = tableSize <= DENSE_LIMIT;
+        this.next = dense ? new int[Math.multiplyExact(states, symbolCount)] : null;
+        this.firstChild = dense ? null : firstChild;
+        this.nextSibling = dense ? null : nextSibling;
+        this.edgeSymbol = dense ? null : edgeSymbol;
+        this.fail = new int[states];
+        this.rootNext = new int[symbolCount];
+        outputs = new int[states][];
+        outputs[0] = toArray(ends.get(0), null);
+        for (int child = firstChild[0]; child >= 0; child = nextSibling[child]) {
+            rootNext[edgeSymbol[child]] = child;
+        }
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(0);
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            if (state != 0) {
+                outputs[state] = toArray(ends.get(state), outputs[fail[state]]);
+            }
+            if (dense) {
+                // Строка состояния - копия строки суффиксной ссылки с переходами к потомкам
+                int row = state * symbolCount;
+                if (state == 0) {
+                    System.arraycopy(rootNext, 0, next, 0, symbolCount);
+                } else {
+                    System.arraycopy(next, fail[state] * symbolCount, next, row, symbolCount);
+                }
+                for (int child = firstChild[state]; child >= 0; child = nextSibling[child]) {
+                    fail[child] = state == 0 ? 0 : next[row + edgeSymbol[child]];
+                    next[row + edgeSymbol[child]] = child;
+                    queue.add(child);
+                }
+            } else {
+                for (int child = firstChild[state]; child >= 0; child = nextSibling[child]) {
+                    fail[child] = state == 0 ? 0 : step(fail[state], edgeSymbol[child]);
+                    queue.add(child);
+                }
+            }
+        }
+    }
+
+    /**
+     * Потомок состояния бора по символу или -1
+     */
+    private static int child(int[] firstChild, int[] nextSibling, int[] edgeSymbol, int state, int symbol) {
+        for (int child = firstChild[state]; child >= 0; child = nextSibling[child]) {
+            if (edgeSymbol[child] == symbol) {
+                return child;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Переход автомата по символу
+     */
+    private int step(int state, int symbol) {
+        if (next != null) {
+            return next[state * symbolCount + symbol];
+        }
+        while (state != 0) {
+            int child = child(firstChild, nextSibling, edgeSymbol, state, symbol);
+            if (child >= 0) {
+                return child;
+            }
+            state = fail[state];
+        }
+        return rootNext[symbol];
+    }
+
+    /**
+     * Количество различных сдвигов слова: НОК размеров колец алфавитов его букв
+     */
+    private static int rotations(String keyword, AlphabetSet alphabets) {
+        int rotations = 1;
+        for (int i = 0; i < keyword.length(); i++) {
+            int code = alphabets.code(keyword.charAt(i));
+            if (code >= 0) {
+                int size = alphabets.get(code >>> AlphabetSet.CODE_SHIFT).size();
+                if ((code & AlphabetSet.LETTER_MASK) < size && rotations % size != 0) {
+                    rotations = rotations / gcd(rotations, size) * size;
+                }
+            }
+        }
+        return rotations;
+    }
+
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    private static int[] toArray(List<Integer> own, int[] inherited) {
+        int ownCount = own == null ? 0 : own.size();
+        int inheritedCount = inherited == null ? 0 : inherited.length;
+        if (ownCount + inheritedCount == 0) {
+            return null;
+        }
+        int[] result = new int[ownCount + inheritedCount];
+        for (int i = 0; i < ownCount; i++) {
+            result[i] = own.get(i);
+        }
+        if (inheritedCount > 0) {
+            System.arraycopy(inherited, 0, result, ownCount, inheritedCount);
+        }
+        return result;
+    }
+
+    /**
+     * Искомые слова
+     */
+    public List<String> keywords() {
+        return List.of(keywords);
+    }
+
+    /**
+     * Все совпадения в тексте (в порядке окончания, перекрывающиеся - тоже)
+     */
+    public List<Match> findAll(CharSequence text) {
+        List<Match> matches = new ArrayList<>();
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = step(state, symbols[text.charAt(i)]);
+            if (outputs[state] != null) {
+                report(state, i + 1, matches::add);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Есть ли в тексте хотя бы одно слово при каком-либо сдвиге
+     */
+    public boolean containsAny(CharSequence text) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = step(state, symbols[text.charAt(i)]);
+            if (outputs[state] != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Поиск в потоке символов за один проход; совпадения, пересекающие
+     * границы блоков чтения, тоже находятся. Позиции считаются от начала
+     * потока. Возвращает количество прочитанных символов.
+     */
+    public long search(Reader in, Consumer<Match> listener) throws IOException {
+        char[] buffer = new char[64 * 1024];
+        long offset = 0;
+        int state = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                state = step(state, symbols[buffer[i]]);
+                if (outputs[state] != null) {
+                    report(state, offset + i + 1, listener);
+                }
+            }
+            offset += read;
+        }
+        return offset;
+    }
+
+    private void report(int state, long end, Consumer<Match> listener) {
+        for (int pattern : outputs[state]) {
+            int keyword = patternKeyword[pattern];
+            listener.accept(new Match(keywords[keyword], keyword, end - patternLength[pattern],
+                    patternShift[pattern]));
+        }
+    }
+
+    /**
+     * Найденное слово: позиция начала в тексте и сдвиг, которым текст зашифрован
+     */
+    public static class Match {
+        public final String keyword;
+        public final int keywordIndex;
+        public final long offset;
+        public final int shift;
+
+        public Match(String keyword, int keywordIndex, long offset, int shift) {
+            this.keyword = keyword;
+            this.keywordIndex = keywordIndex;
+            this.offset = offset;
+            this.shift = shift;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("\"%s\" at %d (Shift %d)", keyword, offset, shift);
+        }
+    }
+}
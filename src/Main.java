@@ -1,9 +1,17 @@
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Scanner;
 
 public class Main {
     private static Scanner scanner = new Scanner(System.in);
 
     public static void main(String[] args) {
+        // С аргументами приложение работает в пакетном режиме без меню
+        if (args.length > 0) {
+            System.exit(BatchCli.run(args, System.in, System.out, System.err));
+        }
 
         System.out.println("=== Welcome to Gehtsoft Technical Assessment ===");
 
@@ -92,6 +100,15 @@ public class Main {
         if (shiftInput.isEmpty()) {
             // Автоматическое определение сдвига
             System.out.println("\n AUTO-DECRYPTION");
+            if (SegmentedAnalyzer.isMixed(text, AlphabetSet.DEFAULT)) {
+                // Смешанный текст: у каждого алфавита свой сдвиг, если это лучше общего
+                SegmentedAnalyzer.Result segmented = SegmentedAnalyzer.analyze(text);
+                if (segmented.isSplit()) {
+                    System.out.println("Shifts by language: " + segmented);
+                    System.out.println("Best result: " + segmented.decrypt(text));
+                    return;
+                }
+            }
             int bestShift = Analyzer.findBestShift(text);
             String bestResult = CaesarCipher.decrypt(text, bestShift);
 
@@ -100,9 +117,9 @@ public class Main {
             System.out.print("\nShow all variants? (y/n): ");
             String showAll = scanner.nextLine().toLowerCase().trim();
             if (showAll.equals("y") || showAll.equals("yes")) {
-                var results = Analyzer.getAllDecryptions(text);
+                var results = Analyzer.getTopDecryptions(text, 5);
                 System.out.println("\n All variants:");
-                for (int i = 0; i < Math.min(5, results.size()); i++) {
+                for (int i = 0; i < results.size(); i++) {
                     System.out.println((i + 1) + ". " + results.get(i));
                 }
             }
@@ -141,23 +158,35 @@ public class Main {
             return;
         }
 
-        String fileContent = FileHandler.safeReadFile(filePath);
-        if (fileContent.startsWith("Error:") || fileContent.startsWith("Undefined")) {
-            System.out.println("Error " + fileContent);
+        try {
+            System.out.println(" File content preview:");
+            System.out.println(FileHandler.readPreview(filePath, 200));
+        } catch (IOException e) {
+            System.out.println("Error " + e.getMessage());
             return;
         }
 
-        System.out.println(" File content preview:");
-        System.out.println(fileContent.length() > 200 ? fileContent.substring(0, 200) + "..." : fileContent);
-
         System.out.println("\nChoose operation:");
         System.out.println("1. Encrypt with specific shift");
         System.out.println("2. Decrypt with specific shift");
         System.out.println("3. Auto-decrypt (find best shift)");
+        System.out.println("4. Encrypt to file (streaming)");
+        System.out.println("5. Decrypt to file (streaming)");
         System.out.print("Your choice: ");
 
         try {
             int choice = Integer.parseInt(scanner.nextLine());
+            if (choice == 4 || choice == 5) {
+                transformFileStreaming(filePath, choice == 4);
+                return;
+            }
+
+            String fileContent = FileHandler.safeReadFile(filePath);
+            if (fileContent.startsWith("Error:") || fileContent.startsWith("Undefined")) {
+                System.out.println("Error " + fileContent);
+                return;
+            }
+
             switch (choice) {
                 case 1:
                     encryptFileContent(fileContent);
@@ -176,6 +205,26 @@ public class Main {
         }
     }
 
+    private static void transformFileStreaming(String filePath, boolean encrypt) {
+        System.out.print("Enter output file path: ");
+        String outputPath = scanner.nextLine().trim();
+        System.out.print("Enter shift value: ");
+        try {
+            int shift = Integer.parseInt(scanner.nextLine());
+            Path input = Paths.get(filePath);
+            Path output = Paths.get(outputPath);
+            CharsetDetector.Detection detection = FileHandler.detectCharset(input);
+            System.out.println(" Detected encoding: " + detection);
+            long processed = FileHandler.transformFileMapped(input, output, encrypt ? shift : -shift,
+                    detection.charset);
+            System.out.println(" Done: " + processed + " bytes processed, written to " + outputPath);
+        } catch (NumberFormatException e) {
+            System.out.println(" Invalid shift value!");
+        } catch (IOException | InvalidPathException e) {
+            System.out.println(" Error: " + e.getMessage());
+        }
+    }
+
     private static void encryptFileContent(String content) {
         System.out.print("Enter shift value: ");
         try {
@@ -208,11 +257,26 @@ public class Main {
         System.out.println("\n AUTO-DECRYPTION ANALYSIS");
         System.out.println("Analyzing text\n");
 
-        // Найти лучший сдвиг
-        int bestShift = Analyzer.findBestShift(content);
+        if (SegmentedAnalyzer.isMixed(content, AlphabetSet.DEFAULT)) {
+            // Смешанный текст: сдвиг подбирается для каждого алфавита отдельно,
+            // если раздельные сдвиги лучше общего
+            SegmentedAnalyzer.Result segmented = SegmentedAnalyzer.analyze(content);
+            if (segmented.isSplit()) {
+                System.out.println("BEST RESULT (" + segmented + "):");
+                System.out.println("─".repeat(50));
+                System.out.println(segmented.decrypt(content));
+                System.out.println("─".repeat(50));
+                return;
+            }
+        }
+
+        // Найти лучший сдвиг (большие файлы анализируются по выборке)
+        Analyzer.ShiftGuess guess = Analyzer.findBestShiftSampled(content);
+        int bestShift = guess.shift;
         String bestDecryption = CaesarCipher.decrypt(content, bestShift);
 
-        System.out.println("BEST RESULT (Shift " + bestShift + "):");
+        System.out.println("BEST RESULT (Shift " + bestShift + ", confidence "
+                + Math.round(guess.confidence * 100) + "%):");
         System.out.println("─".repeat(50));
         System.out.println(bestDecryption);
         System.out.println("─".repeat(50));
@@ -222,13 +286,12 @@ public class Main {
         String response = scanner.nextLine().toLowerCase().trim();
         if (response.equals("y") || response.equals("yes")) {
             System.out.println("\n ALL VARIANTS (sorted by probability):");
-            var results = Analyzer.getAllDecryptions(content);
-            for (int i = 0; i < Math.min(10, results.size()); i++) {
+            var results = Analyzer.getTopDecryptions(content, 10);
+            for (int i = 0; i < results.size(); i++) {
                 var result = results.get(i);
                 System.out.printf("%d. Shift %d (Score: %.3f):\n",
                         i + 1, result.shift, result.score);
-                System.out.println(
-                        "   " + (result.text.length() > 100 ? result.text.substring(0, 100) + "..." : result.text));
+                System.out.println("   " + result.preview(100));
                 System.out.println();
             }
         }
@@ -0,0 +1,389 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Счетчики и гистограммы задержек горячих участков кода.
+ *
+ * Метрики включаются свойством -Dcaesar.metrics=true. Флаг ENABLED - константа,
+ * поэтому при выключенных метриках JIT убирает проверки "if (Metrics.ENABLED)"
+ * вместе с вызовами System.nanoTime, и горячие циклы ничего не платят.
+ * Во включенном режиме счетчики основаны на LongAdder и не создают
+ * конкуренции между потоками; каждая метрика регистрируется как MXBean
+ * (домен CaesarCipher), а все значения выводятся в текстовом формате Prometheus.
+ */
+public final class Metrics {
+
+    public static final boolean ENABLED = Boolean.getBoolean("caesar.metrics");
+
+    // Домен JMX и префикс имен в формате Prometheus
+    private static final String DOMAIN = "CaesarCipher";
+    private static final String PREFIX = "caesar_";
+
+    private static final List<Metric> METRICS = new ArrayList<>();
+
+    // Файлы: прочитанные байты и время определения кодировки
+    public static final Counter FILE_BYTES_READ = counter("file_bytes_read_total",
+            "Bytes read from input files");
+    public static final Histogram CHARSET_DETECTION = histogram("charset_detection_seconds",
+            "Time spent detecting file charsets");
+    public static final Histogram FILE_TRANSFORM = histogram("file_transform_seconds",
+            "Time spent encrypting or decrypting whole files");
+
+    // Шифр: сдвинутые символы и байты
+    public static final Counter CHARS_SHIFTED = counter("chars_shifted_total",
+            "Characters passed through cipher tables");
+    public static final Counter BYTES_SHIFTED = counter("bytes_shifted_total",
+            "Bytes passed through single-byte cipher tables");
+
+    // Анализ: оцененные сдвиги и кэш результатов
+    public static final Counter CANDIDATES_SCORED = counter("shift_candidates_scored_total",
+            "Shift candidates scored by the analyzer");
+    public static final Histogram SHIFT_SCORING = histogram("shift_scoring_seconds",
+            "Time spent scoring all shifts of one text");
+    public static final Counter RESULT_CACHE_HITS = counter("result_cache_hits_total",
+            "Shift rankings found in the result cache");
+    public static final Counter RESULT_CACHE_MISSES = counter("result_cache_misses_total",
+            "Shift rankings not found in the result cache");
+    public static final Counter RESULT_CACHE_EVICTIONS = counter("result_cache_evictions_total",
+            "Shift rankings evicted from the result cache");
+
+    // Калькулятор: компиляция, вычисление и кэш выражений
+    public static final Counter EXPRESSIONS_COMPILED = counter("expressions_compiled_total",
+            "Expressions compiled");
+    public static final Counter EXPRESSIONS_EVALUATED = counter("expressions_evaluated_total",
+            "Expression evaluations, one per row in batch mode");
+    public static final Counter EXPRESSION_CACHE_HITS = counter("expression_cache_hits_total",
+            "Compiled expressions found in the cache");
+    public static final Counter EXPRESSION_CACHE_MISSES = counter("expression_cache_misses_total",
+            "Expressions not found in the cache");
+    public static final Histogram EXPRESSION_COMPILATION = histogram("expression_compilation_seconds",
+            "Time spent compiling expressions");
+
+    // Сервер: запросы и время их обработки
+    public static final Counter HTTP_REQUESTS = counter("http_requests_total",
+            "HTTP requests handled by the server");
+    public static final Histogram HTTP_REQUEST = histogram("http_request_seconds",
+            "Time spent handling one HTTP request");
+
+    static {
+        if (ENABLED) {
+            registerMBeans();
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Все метрики в порядке объявления
+     */
+    public static List<Metric> all() {
+        return Collections.unmodifiableList(METRICS);
+    }
+
+    /**
+     * Сброс всех метрик
+     */
+    public static void resetAll() {
+        for (Metric metric : METRICS) {
+            metric.reset();
+        }
+    }
+
+    /**
+     * Значения всех метрик в текстовом формате Prometheus
+     */
+    public static String prometheus() {
+        StringBuilder sb = new StringBuilder();
+        writePrometheus(sb);
+        return sb.toString();
+    }
+
+    /**
+     * Запись значений всех метрик в текстовом формате Prometheus
+     */
+    public static void writePrometheus(Appendable out) {
+        try {
+            for (Metric metric : METRICS) {
+                metric.writePrometheus(out);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Counter counter(String name, String help) {
+        Counter counter = new Counter(name, help);
+        METRICS.add(counter);
+        return counter;
+    }
+
+    private static Histogram histogram(String name, String help) {
+        Histogram histogram = new Histogram(name, help);
+        METRICS.add(histogram);
+        return histogram;
+    }
+
+    private static void registerMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (Metric metric : METRICS) {
+                String type = metric instanceof Counter ? "Counter" : "Histogram";
+                server.registerMBean(metric, new ObjectName(DOMAIN + ":type=" + type + ",name=" + metric.name));
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to register metrics MBeans", e);
+        }
+    }
+
+    /**
+     * Общая часть метрик: имя и описание
+     */
+    public abstract static class Metric {
+        final String name;
+        final String help;
+
+        Metric(String name, String help) {
+            this.name = name;
+            this.help = help;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getHelp() {
+            return help;
+        }
+
+        public abstract void reset();
+
+        abstract void writePrometheus(Appendable out) throws IOException;
+
+        void writeHeader(Appendable out, String type) throws IOException {
+            out.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+            out.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+        }
+    }
+
+    /**
+     * Атрибуты счетчика в JMX
+     */
+    public interface CounterMXBean {
+        String getName();
+
+        String getHelp();
+
+        long getCount();
+
+        void reset();
+    }
+
+    /**
+     * Атрибуты гистограммы в JMX (время в наносекундах)
+     */
+    public interface HistogramMXBean {
+        String getName();
+
+        String getHelp();
+
+        long getCount();
+
+        long getTotalNanos();
+
+        long getMaxNanos();
+
+        double getMeanNanos();
+
+        long getMedianNanos();
+
+        long getP99Nanos();
+
+        void reset();
+    }
+
+    /**
+     * Монотонный счетчик
+     */
+    public static final class Counter extends Metric implements CounterMXBean {
+        private final LongAdder count = new LongAdder();
+
+        Counter(String name, String help) {
+            super(name, help);
+        }
+
+        public void increment() {
+            count.increment();
+        }
+
+        public void add(long value) {
+            count.add(value);
+        }
+
+        @Override
+        public long getCount() {
+            return count.sum();
+        }
+
+        @Override
+        public void reset() {
+            count.reset();
+        }
+
+        @Override
+        void writePrometheus(Appendable out) throws IOException {
+            writeHeader(out, "counter");
+            out.append(PREFIX).append(name).append(' ').append(Long.toString(getCount())).append('\n');
+        }
+    }
+
+    /**
+     * Гистограмма длительностей с корзинами по степеням двойки наносекунд:
+     * в корзину k попадают значения от 2^(k-1) до 2^k - 1 (в корзину 0 - ноль).
+     * Запись - одно сложение в LongAdder корзины и суммы.
+     */
+    public static final class Histogram extends Metric implements HistogramMXBean {
+        private static final int BUCKETS = 64;
+
+        // Корзины, выводимые в формате Prometheus: примерно от 1 мкс до 68 с
+        // (постоянный набор границ; меньшие значения входят в первую корзину)
+        private static final int FIRST_EXPORTED = 10;
+        private static final int LAST_EXPORTED = 36;
+
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        Histogram(String name, String help) {
+            super(name, help);
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * Запись длительности в наносекундах (отрицательные значения считаются нулем)
+         */
+        public void record(long nanos) {
+            long value = Math.max(0, nanos);
+            buckets[BUCKETS - Long.numberOfLeadingZeros(value)].increment();
+            total.add(value);
+            max.accumulate(value);
+        }
+
+        /**
+         * Запись времени, прошедшего с отметки System.nanoTime()
+         */
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        @Override
+        public long getCount() {
+            long count = 0;
+            for (LongAdder bucket : buckets) {
+                count += bucket.sum();
+            }
+            return count;
+        }
+
+        @Override
+        public long getTotalNanos() {
+            return total.sum();
+        }
+
+        @Override
+        public long getMaxNanos() {
+            return max.get();
+        }
+
+        @Override
+        public double getMeanNanos() {
+            long count = getCount();
+            return count == 0 ? 0 : (double) getTotalNanos() / count;
+        }
+
+        @Override
+        public long getMedianNanos() {
+            return percentileNanos(0.5);
+        }
+
+        @Override
+        public long getP99Nanos() {
+            return percentileNanos(0.99);
+        }
+
+        /**
+         * Верхняя граница корзины, в которую попадает заданная доля значений
+         */
+        public long percentileNanos(double fraction) {
+            long[] counts = snapshot();
+            long count = 0;
+            for (long bucket : counts) {
+                count += bucket;
+            }
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(fraction * count);
+            long seen = 0;
+            for (int k = 0; k < BUCKETS; k++) {
+                seen += counts[k];
+                if (seen >= Math.max(1, rank)) {
+                    return Math.min(upperBound(k), getMaxNanos());
+                }
+            }
+            return getMaxNanos();
+        }
+
+        @Override
+        public void reset() {
+            for (LongAdder bucket : buckets) {
+                bucket.reset();
+            }
+            total.reset();
+            max.reset();
+        }
+
+        @Override
+        void writePrometheus(Appendable out) throws IOException {
+            writeHeader(out, "histogram");
+            long[] counts = snapshot();
+            long cumulative = 0;
+            for (int k = 0; k < BUCKETS; k++) {
+                cumulative += counts[k];
+                if (k >= FIRST_EXPORTED && k <= LAST_EXPORTED) {
+                    out.append(PREFIX).append(name).append("_bucket{le=\"")
+                            .append(Double.toString(upperBound(k) / 1e9)).append("\"} ")
+                            .append(Long.toString(cumulative)).append('\n');
+                }
+            }
+            out.append(PREFIX).append(name).append("_bucket{le=\"+Inf\"} ")
+                    .append(Long.toString(cumulative)).append('\n');
+            out.append(PREFIX).append(name).append("_sum ")
+                    .append(Double.toString(getTotalNanos() / 1e9)).append('\n');
+            out.append(PREFIX).append(name).append("_count ").append(Long.toString(cumulative)).append('\n');
+        }
+
+        private long[] snapshot() {
+            long[] counts = new long[BUCKETS];
+            for (int k = 0; k < BUCKETS; k++) {
+                counts[k] = buckets[k].sum();
+            }
+            return counts;
+        }
+
+        private static long upperBound(int bucket) {
+            return bucket == BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+        }
+    }
+}
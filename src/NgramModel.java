@@ -0,0 +1,253 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Триграммная языковая модель: натуральный логарифм вероятности каждой триграммы.
+ * Триграмма кодируется номерами букв в алфавите: (a * size + b) * size + c,
+ * значения хранятся в плотном массиве float, поэтому оценка текста - это
+ * один проход без выделения памяти.
+ *
+ * Таблица загружается из ресурса models/<имя алфавита>.trigrams со счетчиками
+ * букв и частых триграмм; порядок букв в ресурсе совпадает с алфавитом.
+ * Для триграмм, которых нет в таблице, вероятность оценивается по частотам
+ * букв, но не выше, чем у самой редкой известной триграммы.
+ */
+public final class NgramModel {
+
+    // Загруженные модели; пустое значение - для алфавита нет ресурса
+    private static final Map<Alphabet, Optional<NgramModel>> MODELS = new ConcurrentHashMap<>();
+
+    // Встроенные алфавиты, для которых ресурс модели поставляется вместе с классами
+    private static final Set<Alphabet> BUNDLED = Set.of(Alphabet.ENGLISH, Alphabet.RUSSIAN,
+            Alphabet.UKRAINIAN, Alphabet.GERMAN, Alphabet.GREEK);
+
+    private final Alphabet alphabet;
+    private final int size;
+    private final float[] logProbabilities;
+    private final double floor;
+    private final double expected;
+
+    private NgramModel(Alphabet alphabet, float[] logProbabilities, double floor, double expected) {
+        this.alphabet = alphabet;
+        this.size = alphabet.size();
+        this.logProbabilities = logProbabilities;
+        this.floor = floor;
+        this.expected = expected;
+    }
+
+    /**
+     * Модель для зарегистрированного языка (ShiftScorer.ENGLISH, ShiftScorer.RUSSIAN, ...)
+     */
+    public static NgramModel forLanguage(String language) {
+        NgramModel model = forAlphabet(AlphabetRegistry.get(language));
+        if (model == null) {
+            throw new IllegalArgumentException("No n-gram model for language: " + language);
+        }
+        return model;
+    }
+
+    /**
+     * Модель для алфавита или null, если ресурса для него нет.
+     * Для встроенных алфавитов ресурс обязателен: без него оценка сдвигов
+     * теряет триграммную составляющую, поэтому его отсутствие - ошибка сборки.
+     */
+    public static NgramModel forAlphabet(Alphabet alphabet) {
+        return MODELS.computeIfAbsent(alphabet, NgramModel::load).orElse(null);
+    }
+
+    /**
+     * Алфавит модели
+     */
+    public Alphabet alphabet() {
+        return alphabet;
+    }
+
+    /**
+     * Логарифм вероятности триграммы по номерам букв
+     */
+    public double logProbability(int first, int second, int third) {
+        return logProbabilities[(first * size + second) * size + third];
+    }
+
+    /**
+     * Логарифм вероятности триграммы по упакованному индексу
+     */
+    public double logProbability(int index) {
+        return logProbabilities[index];
+    }
+
+    /**
+     * Средний логарифм вероятности триграмм в обычном тексте на этом языке
+     */
+    public double expectedLogProbability() {
+        return expected;
+    }
+
+    /**
+     * Наименьший логарифм вероятности в таблице
+     */
+    public double floorLogProbability() {
+        return floor;
+    }
+
+    /**
+     * Средний логарифм вероятности триграмм текста. Триграммы берутся внутри слов;
+     * буквы других алфавитов, дополнительные буквы и прочие символы разрывают слово.
+     * Возвращает NaN, если в тексте нет ни одной триграммы.
+     */
+    public double averageLogProbability(CharSequence text) {
+        double sum = 0;
+        long count = 0;
+        int first = -1;
+        int second = -1;
+        for (int i = 0; i < text.length(); i++) {
+            int letter = alphabet.indexOf(text.charAt(i));
+            if (letter < 0 || letter >= size) {
+                first = -1;
+                second = -1;
+                continue;
+            }
+            if (first >= 0) {
+                sum += logProbabilities[(first * size + second) * size + letter];
+                count++;
+            }
+            first = second;
+            second = letter;
+        }
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    /**
+     * Оценка близости к обычному тексту: около 1 для естественного текста,
+     * около 0 для случайного набора букв
+     */
+    public double fitness(double averageLogProbability) {
+        return Math.max(0, (averageLogProbability - floor) / (expected - floor));
+    }
+
+    private static Optional<NgramModel> load(Alphabet alphabet) {
+        String resource = "/models/" + alphabet.name() + ".trigrams";
+        try (InputStream in = NgramModel.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                if (BUNDLED.contains(alphabet)) {
+                    throw new IllegalStateException("Missing n-gram model resource " + resource
+                            + "; copy the models directory to the class path");
+                }
+                return Optional.empty();
+            }
+            return Optional.of(parse(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)),
+                    resource, alphabet));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read n-gram model: " + resource, e);
+        }
+    }
+
+    /**
+     * Разбор ресурса: строка "alphabet ...", затем строки "n-грамма количество"
+     * для отдельных букв и для триграмм
+     */
+    private static NgramModel parse(BufferedReader reader, String resource, Alphabet expected) throws IOException {
+        String alphabet = null;
+        long[] letters = null;
+        long[] trigrams = null;
+        long letterTotal = 0;
+        long trigramTotal = 0;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int space = line.indexOf(' ');
+            if (space < 0) {
+                throw new IllegalArgumentException("Malformed line in " + resource + ": " + line);
+            }
+            String key = line.substring(0, space);
+            String value = line.substring(space + 1).trim();
+            if (key.equals("alphabet")) {
+                if (!value.equals(expected.lowerLetters())) {
+                    throw new IllegalArgumentException("Alphabet in " + resource + " does not match " + expected);
+                }
+                alphabet = value;
+                letters = new long[alphabet.length()];
+                trigrams = new long[alphabet.length() * alphabet.length() * alphabet.length()];
+                continue;
+            }
+            if (alphabet == null) {
+                throw new IllegalArgumentException("Alphabet must come first in " + resource);
+            }
+
+            long count = Long.parseLong(value);
+            int size = alphabet.length();
+            int index = 0;
+            for (int i = 0; i < key.length(); i++) {
+                int letter = alphabet.indexOf(key.charAt(i));
+                if (letter < 0) {
+                    throw new IllegalArgumentException("Unknown letter in " + resource + ": " + key);
+                }
+                index = index * size + letter;
+            }
+            if (key.length() == 1) {
+                letters[index] += count;
+                letterTotal += count;
+            } else if (key.length() == 3) {
+                trigrams[index] += count;
+                trigramTotal += count;
+            } else {
+                throw new IllegalArgumentException("Unsupported n-gram in " + resource + ": " + key);
+            }
+        }
+        if (alphabet == null || letterTotal == 0 || trigramTotal == 0) {
+            throw new IllegalArgumentException("Empty n-gram model: " + resource);
+        }
+        return build(expected, letters, letterTotal, trigrams, trigramTotal);
+    }
+
+    private static NgramModel build(Alphabet alphabet, long[] letters, long letterTotal,
+                                    long[] trigrams, long trigramTotal) {
+        int size = alphabet.size();
+
+        // Вероятность самой редкой известной триграммы - верхняя граница для неизвестных
+        long rarest = Long.MAX_VALUE;
+        for (long count : trigrams) {
+            if (count > 0) {
+                rarest = Math.min(rarest, count);
+            }
+        }
+        double ceiling = (double) rarest / trigramTotal;
+
+        // Частоты букв со сглаживанием, чтобы не было нулевых вероятностей
+        double[] letterProbabilities = new double[size];
+        for (int i = 0; i < size; i++) {
+            letterProbabilities[i] = (letters[i] + 1.0) / (letterTotal + size);
+        }
+
+        float[] table = new float[trigrams.length];
+        double floor = 0;
+        double expected = 0;
+        for (int index = 0; index < table.length; index++) {
+            double probability;
+            if (trigrams[index] > 0) {
+                probability = (double) trigrams[index] / trigramTotal;
+                expected += probability * Math.log(probability);
+            } else {
+                int first = index / (size * size);
+                int second = (index / size) % size;
+                int third = index % size;
+                probability = Math.min(ceiling, letterProbabilities[first]
+                        * letterProbabilities[second] * letterProbabilities[third]);
+            }
+            table[index] = (float) Math.log(probability);
+            floor = Math.min(floor, table[index]);
+        }
+        return new NgramModel(alphabet, table, floor, expected);
+    }
+}
@@ -0,0 +1,238 @@
+import java.nio.CharBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Параллельный шифр Цезаря.
+ * Каждый символ сдвигается независимо, поэтому текст делится на блоки,
+ * которые обрабатываются в пуле потоков и записываются на свои места.
+ * Небольшие тексты обрабатываются в текущем потоке.
+ */
+public final class ParallelCipher {
+
+    // Минимальный размер текста для параллельной обработки
+    public static final int PARALLEL_THRESHOLD = 256 * 1024;
+
+    // Размер блока, обрабатываемого одной задачей
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private ParallelCipher() {
+    }
+
+    /**
+     * Шифрование текста
+     */
+    public static String encrypt(String text, int shift) {
+        return apply(text, shift);
+    }
+
+    /**
+     * Дешифрование текста
+     */
+    public static String decrypt(String text, int shift) {
+        return apply(text, -shift);
+    }
+
+    /**
+     * Сдвиг строки; большие строки обрабатываются в общем ForkJoinPool
+     */
+    public static String apply(String text, int shift) {
+        return apply(text, AlphabetSet.DEFAULT, shift);
+    }
+
+    /**
+     * Сдвиг строки для заданного набора алфавитов
+     */
+    public static String apply(String text, AlphabetSet alphabets, int shift) {
+        return apply(text, CipherEngine.forShift(alphabets, shift));
+    }
+
+    /**
+     * Сдвиг строки со своим сдвигом для каждого алфавита набора
+     */
+    public static String apply(String text, AlphabetSet alphabets, int[] shifts) {
+        return apply(text, CipherEngine.forShifts(alphabets, shifts));
+    }
+
+    private static String apply(String text, CipherEngine engine) {
+        if (text.length() < PARALLEL_THRESHOLD) {
+            return engine.apply(text);
+        }
+        char[] chars = text.toCharArray();
+        ForkJoinPool.commonPool().invoke(new ArrayTask(engine, chars, 0, chars, 0, chars.length));
+        return new String(chars);
+    }
+
+    /**
+     * Сдвиг массива в переданный буфер в заданном ForkJoinPool
+     * (английский и русский алфавиты).
+     * Исходный и результирующий массивы могут совпадать.
+     */
+    public static void apply(char[] src, int srcOffset, char[] dst, int dstOffset, int length,
+                             int shift, ForkJoinPool pool) {
+        apply(src, srcOffset, dst, dstOffset, length, AlphabetSet.DEFAULT, shift, pool);
+    }
+
+    /**
+     * Сдвиг массива в переданный буфер в заданном ForkJoinPool для заданного набора алфавитов
+     */
+    public static void apply(char[] src, int srcOffset, char[] dst, int dstOffset, int length,
+                             AlphabetSet alphabets, int shift, ForkJoinPool pool) {
+        apply(src, srcOffset, dst, dstOffset, length, CipherEngine.forShift(alphabets, shift), pool);
+    }
+
+    /**
+     * Сдвиг массива готовой таблицей (например, CipherEngine.forShifts) в заданном ForkJoinPool
+     */
+    public static void apply(char[] src, int srcOffset, char[] dst, int dstOffset, int length,
+                             CipherEngine engine, ForkJoinPool pool) {
+        if (length < PARALLEL_THRESHOLD) {
+            engine.apply(src, srcOffset, dst, dstOffset, length);
+            return;
+        }
+        pool.invoke(new ArrayTask(engine, src, srcOffset, dst, dstOffset, length));
+    }
+
+    /**
+     * Сдвиг массива в переданный буфер с помощью произвольного Executor
+     * (английский и русский алфавиты).
+     * Метод возвращает управление после обработки всех блоков.
+     */
+    public static void apply(char[] src, int srcOffset, char[] dst, int dstOffset, int length,
+                             int shift, Executor executor) {
+        apply(src, srcOffset, dst, dstOffset, length, AlphabetSet.DEFAULT, shift, executor);
+    }
+
+    /**
+     * Сдвиг массива с помощью произвольного Executor для заданного набора алфавитов
+     */
+    public static void apply(char[] src, int srcOffset, char[] dst, int dstOffset, int length,
+                             AlphabetSet alphabets, int shift, Executor executor) {
+        apply(src, srcOffset, dst, dstOffset, length, CipherEngine.forShift(alphabets, shift), executor);
+    }
+
+    /**
+     * Сдвиг массива готовой таблицей с помощью произвольного Executor
+     */
+    public static void apply(char[] src, int srcOffset, char[] dst, int dstOffset, int length,
+                             CipherEngine engine, Executor executor) {
+        if (length < PARALLEL_THRESHOLD) {
+            engine.apply(src, srcOffset, dst, dstOffset, length);
+            return;
+        }
+
+        int chunks = (length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[chunks];
+        for (int i = 0; i < chunks; i++) {
+            int start = i * CHUNK_SIZE;
+            int chunkLength = Math.min(CHUNK_SIZE, length - start);
+            futures[i] = CompletableFuture.runAsync(() ->
+                    engine.apply(src, srcOffset + start, dst, dstOffset + start, chunkLength), executor);
+        }
+        CompletableFuture.allOf(futures).join();
+    }
+
+    /**
+     * Сдвиг всех оставшихся символов буфера in в буфер out
+     * (например, представления отображенного в память файла в UTF-16)
+     * для английского и русского алфавитов.
+     * Позиции обоих буферов сдвигаются на количество обработанных символов.
+     */
+    public static void apply(CharBuffer in, CharBuffer out, int shift, ForkJoinPool pool) {
+        apply(in, out, AlphabetSet.DEFAULT, shift, pool);
+    }
+
+    /**
+     * Сдвиг оставшихся символов буфера для заданного набора алфавитов
+     */
+    public static void apply(CharBuffer in, CharBuffer out, AlphabetSet alphabets, int shift, ForkJoinPool pool) {
+        apply(in, out, CipherEngine.forShift(alphabets, shift), pool);
+    }
+
+    /**
+     * Сдвиг оставшихся символов буфера готовой таблицей
+     */
+    public static void apply(CharBuffer in, CharBuffer out, CipherEngine engine, ForkJoinPool pool) {
+        int length = in.remaining();
+        if (out.remaining() < length) {
+            throw new IllegalArgumentException("Output buffer is too small");
+        }
+        if (length < PARALLEL_THRESHOLD) {
+            engine.apply(in, out);
+            return;
+        }
+        pool.invoke(new BufferTask(engine, in.slice(), out.slice()));
+        in.position(in.position() + length);
+        out.position(out.position() + length);
+    }
+
+    /**
+     * Задача для обработки диапазона массива
+     */
+    @SuppressWarnings("serial")
+    private static class ArrayTask extends RecursiveAction {
+        private final CipherEngine engine;
+        private final char[] src;
+        private final int srcOffset;
+        private final char[] dst;
+        private final int dstOffset;
+        private final int length;
+
+        ArrayTask(CipherEngine engine, char[] src, int srcOffset, char[] dst, int dstOffset, int length) {
+            this.engine = engine;
+            this.src = src;
+            this.srcOffset = srcOffset;
+            this.dst = dst;
+            this.dstOffset = dstOffset;
+            this.length = length;
+        }
+
+        @Override
+        protected void compute() {
+            if (length <= CHUNK_SIZE) {
+                engine.apply(src, srcOffset, dst, dstOffset, length);
+                return;
+            }
+            int half = length / 2;
+            invokeAll(new ArrayTask(engine, src, srcOffset, dst, dstOffset, half),
+                      new ArrayTask(engine, src, srcOffset + half, dst, dstOffset + half, length - half));
+        }
+    }
+
+    /**
+     * Задача для обработки буферов; каждая половина работает со своим срезом
+     */
+    @SuppressWarnings("serial")
+    private static class BufferTask extends RecursiveAction {
+        private final CipherEngine engine;
+        private final CharBuffer in;
+        private final CharBuffer out;
+
+        BufferTask(CipherEngine engine, CharBuffer in, CharBuffer out) {
+            this.engine = engine;
+            this.in = in;
+            this.out = out;
+        }
+
+        @Override
+        protected void compute() {
+            int length = in.remaining();
+            if (length <= CHUNK_SIZE) {
+                engine.apply(in, out);
+                return;
+            }
+            int half = length / 2;
+            invokeAll(new BufferTask(engine, slice(in, 0, half), slice(out, 0, half)),
+                      new BufferTask(engine, slice(in, half, length - half), slice(out, half, length - half)));
+        }
+
+        private static CharBuffer slice(CharBuffer buffer, int offset, int length) {
+            CharBuffer copy = buffer.duplicate();
+            copy.position(buffer.position() + offset);
+            copy.limit(buffer.position() + offset + length);
+            return copy.slice();
+        }
+    }
+}
@@ -0,0 +1,323 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Группировка сообщений, совпадающих с точностью до сдвига, чтобы подбирать
+ * сдвиг один раз на группу. Каноническая форма текста получается поворотом
+ * каждого алфавита так, чтобы первая буква этого алфавита в тексте стала
+ * буквой с номером 0; у всех сдвигов одного открытого текста каноническая
+ * форма одна. Ключ группы - 64-битный хэш канонической формы, вычисляемый
+ * за один проход без построения самой формы.
+ *
+ * Сдвиг первого сообщения группы подбирается анализатором (для смешанного
+ * текста, если раздельные сдвиги лучше общего, - SegmentedAnalyzer), а для
+ * остальных выводится из разности первых букв. Группы хранятся
+ * в ConcurrentHashMap, поэтому объект можно использовать из нескольких
+ * потоков; каждая группа анализируется один раз. При совпадении хэшей разных
+ * форм (проверяется посимвольным сравнением с первым сообщением группы)
+ * сообщение анализируется отдельно. Используется командой crack с параметром
+ * --clusters (см. StreamingCracker).
+ */
+public final class RotationClusters {
+
+    private final AlphabetSet alphabets;
+    private final int maxClusters;
+    private final ConcurrentHashMap<Long, Cluster> clusters = new ConcurrentHashMap<>();
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder cracked = new LongAdder();
+
+    /**
+     * Группировка для английского и русского алфавитов
+     */
+    public RotationClusters() {
+        this(AlphabetSet.DEFAULT);
+    }
+
+    /**
+     * Группировка для заданного набора алфавитов
+     */
+    public RotationClusters(AlphabetSet alphabets) {
+        this(alphabets, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Группировка не более чем в maxClusters групп: когда групп столько,
+     * сообщения новых групп анализируются по отдельности и не запоминаются
+     */
+    public RotationClusters(AlphabetSet alphabets, int maxClusters) {
+        if (maxClusters < 1) {
+            throw new IllegalArgumentException("Cluster limit must be positive: " + maxClusters);
+        }
+        this.alphabets = alphabets;
+        this.maxClusters = maxClusters;
+    }
+
+    /**
+     * Подбор сдвига сообщения: сдвиг группы берется готовым или подбирается
+     * для первого сообщения группы
+     */
+    public Result crack(String text) {
+        messages.increment();
+        int[] offsets = new int[alphabets.size()];
+        long hash = canonicalHash(text, alphabets, offsets);
+        Cluster cluster = clusters.get(hash);
+        if (cluster == null) {
+            if (clusters.size() >= maxClusters) {
+                // Предел групп достигнут - сообщение анализируется без группы
+                return new Cluster(text, offsets).result(this);
+            }
+            cluster = clusters.computeIfAbsent(hash, h -> new Cluster(text, offsets));
+        }
+        if (cluster.representative != text && !cluster.sameRotation(text, offsets, alphabets)) {
+            // Совпадение хэшей разных форм - сообщение анализируется без группы
+            return new Cluster(text, offsets).result(this).forMember(offsets, alphabets);
+        }
+        return cluster.result(this).forMember(offsets, alphabets);
+    }
+
+    /**
+     * Количество групп
+     */
+    public int clusterCount() {
+        return clusters.size();
+    }
+
+    /**
+     * Количество обработанных сообщений
+     */
+    public long messageCount() {
+        return messages.sum();
+    }
+
+    /**
+     * Количество запусков анализатора (по одному на группу)
+     */
+    public long crackCount() {
+        return cracked.sum();
+    }
+
+    /**
+     * Удаление всех групп
+     */
+    public void clear() {
+        clusters.clear();
+    }
+
+    /**
+     * Каноническая форма текста: буквы каждого алфавита повернуты так, что первая
+     * из них становится буквой 0; регистр, прочие символы и дополнительные буквы
+     * не меняются
+     */
+    public static String canonicalForm(CharSequence text, AlphabetSet alphabets) {
+        int[] first = new int[alphabets.size()];
+        Arrays.fill(first, -1);
+        char[] chars = new char[text.length()];
+        for (int i = 0; i < chars.length; i++) {
+            char c = text.charAt(i);
+            int code = alphabets.code(c);
+            int alphabet = code >>> AlphabetSet.CODE_SHIFT;
+            int letter = code & AlphabetSet.LETTER_MASK;
+            if (code >= 0 && letter < alphabets.get(alphabet).size()) {
+                Alphabet letters = alphabets.get(alphabet);
+                if (first[alphabet] < 0) {
+                    first[alphabet] = letter;
+                }
+                int canonical = Math.floorMod(letter - first[alphabet], letters.size());
+                c = Character.isUpperCase(c) ? letters.upper(canonical) : letters.lower(canonical);
+            }
+            chars[i] = c;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * 64-битный хэш канонической формы текста за один проход
+     */
+    public static long canonicalHash(CharSequence text, AlphabetSet alphabets) {
+        return canonicalHash(text, alphabets, new int[alphabets.size()]);
+    }
+
+    /**
+     * Хэш канонической формы; в offsets записывается номер первой буквы
+     * каждого алфавита (-1, если букв алфавита нет)
+     */
+    private static long canonicalHash(CharSequence text, AlphabetSet alphabets, int[] offsets) {
+        Arrays.fill(offsets, -1);
+        long h = 0x9E3779B97F4A7C15L ^ text.length();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int code = alphabets.code(c);
+            int alphabet = code >>> AlphabetSet.CODE_SHIFT;
+            int letter = code & AlphabetSet.LETTER_MASK;
+            long value;
+            if (code >= 0 && letter < alphabets.get(alphabet).size()) {
+                if (offsets[alphabet] < 0) {
+                    offsets[alphabet] = letter;
+                }
+                int canonical = Math.floorMod(letter - offsets[alphabet], alphabets.get(alphabet).size());
+                // Буквы кольца отделены от прочих символов старшими битами
+                value = 1L << 32 | (long) alphabet << 16 | canonical << 1 | (Character.isUpperCase(c) ? 1 : 0);
+            } else {
+                value = c;
+            }
+            h = Long.rotateLeft(h ^ value * 0x87C37B91114253D5L, 31) * 0x4CF5AD432745937FL;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Группа сообщений с одной канонической формой
+     */
+    private static final class Cluster {
+        final String representative;
+        final int[] offsets;
+        private volatile Result result;
+
+        Cluster(String representative, int[] offsets) {
+            this.representative = representative;
+            this.offsets = offsets;
+        }
+
+        /**
+         * Совпадает ли текст с первым сообщением с точностью до поворота каждого
+         * алфавита: канонические формы сравниваются посимвольно по номерам первых
+         * букв, без построения строк
+         */
+        boolean sameRotation(String text, int[] textOffsets, AlphabetSet alphabets) {
+            if (text.length() != representative.length()) {
+                return false;
+            }
+            for (int i = 0; i < text.length(); i++) {
+                char a = representative.charAt(i);
+                char b = text.charAt(i);
+                int codeA = alphabets.code(a);
+                int codeB = alphabets.code(b);
+                int alphabet = codeA >>> AlphabetSet.CODE_SHIFT;
+                int size = codeA >= 0 ? alphabets.get(alphabet).size() : 0;
+                if ((codeA & AlphabetSet.LETTER_MASK) < size) {
+                    // Буква кольца: тот же алфавит, регистр и номер после поворота
+                    if (codeB < 0 || codeB >>> AlphabetSet.CODE_SHIFT != alphabet
+                            || (codeB & AlphabetSet.LETTER_MASK) >= size
+                            || Character.isUpperCase(a) != Character.isUpperCase(b)
+                            || Math.floorMod((codeA & AlphabetSet.LETTER_MASK) - offsets[alphabet], size)
+                                != Math.floorMod((codeB & AlphabetSet.LETTER_MASK) - textOffsets[alphabet], size)) {
+                        return false;
+                    }
+                } else if (a != b) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Сдвиг первого сообщения; анализ выполняется один раз
+         */
+        Result result(RotationClusters owner) {
+            Result result = this.result;
+            if (result == null) {
+                synchronized (this) {
+                    result = this.result;
+                    if (result == null) {
+                        AlphabetSet alphabets = owner.alphabets;
+                        ShiftCache.Ranking ranking = Analyzer.rank(representative, alphabets);
+                        // Нулевой сдвиг тоже возможен: первое сообщение может быть
+                        // не зашифровано, а остальные сообщения группы - зашифрованы
+                        int shift = 0;
+                        for (int s = 1; s <= ranking.size(); s++) {
+                            if (ranking.score(s) > ranking.score(shift)) {
+                                shift = s;
+                            }
+                        }
+                        int[] shifts = shifts(shift, alphabets);
+                        // В смешанном тексте сдвиг каждого алфавита подбирается отдельно,
+                        // если раздельные сдвиги лучше общего (см. SegmentedAnalyzer.Result.isSplit)
+                        if (SegmentedAnalyzer.isMixed(representative, alphabets)) {
+                            SegmentedAnalyzer.Result segmented = SegmentedAnalyzer.analyze(representative, alphabets);
+                            if (segmented.isSplit()) {
+                                shifts = segmented.shifts();
+                                shift = shifts[alphabets.indexOf(ranking.language)];
+                            }
+                        }
+                        result = new Result(shift, ranking.language, ranking.score(shift), shifts, offsets, alphabets);
+                        owner.cracked.increment();
+                        this.result = result;
+                    }
+                }
+            }
+            return result;
+        }
+
+        private static int[] shifts(int shift, AlphabetSet alphabets) {
+            int[] shifts = new int[alphabets.size()];
+            for (int a = 0; a < shifts.length; a++) {
+                shifts[a] = Math.floorMod(shift, alphabets.get(a).size());
+            }
+            return shifts;
+        }
+    }
+
+    /**
+     * Сдвиг сообщения: сдвиг по преобладающему алфавиту (как у Analyzer.findBestShift)
+     * и сдвиги каждого алфавита набора
+     */
+    public static class Result {
+        public final int shift;
+        public final String language;
+        public final double score;
+        private final int[] shifts;
+        private final int[] offsets;
+        private final AlphabetSet alphabets;
+
+        Result(int shift, String language, double score, int[] shifts, int[] offsets, AlphabetSet alphabets) {
+            this.shift = shift;
+            this.language = language;
+            this.score = score;
+            this.shifts = shifts;
+            this.offsets = offsets;
+            this.alphabets = alphabets;
+        }
+
+        /**
+         * Перенос сдвига на сообщение группы: каждый алфавит сдвигается
+         * на разность первых букв сообщения и первого сообщения группы
+         */
+        Result forMember(int[] memberOffsets, AlphabetSet alphabets) {
+            if (Arrays.equals(memberOffsets, offsets)) {
+                return this;
+            }
+            int[] memberShifts = new int[shifts.length];
+            for (int a = 0; a < shifts.length; a++) {
+                int delta = offsets[a] >= 0 ? memberOffsets[a] - offsets[a] : 0;
+                memberShifts[a] = Math.floorMod(shifts[a] + delta, alphabets.get(a).size());
+            }
+            int shift = memberShifts[alphabets.indexOf(language)];
+            return new Result(shift, language, score, memberShifts, memberOffsets, alphabets);
+        }
+
+        /**
+         * Сдвиги алфавитов набора
+         */
+        public int[] shifts() {
+            return shifts.clone();
+        }
+
+        /**
+         * Дешифрование сообщения найденными сдвигами
+         */
+        public String decrypt(String text) {
+            return CaesarCipher.decrypt(text, shifts, alphabets);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Shift %d (Language: %s, Score: %.3f)", shift, language, score);
+        }
+    }
+}
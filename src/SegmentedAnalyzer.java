@@ -0,0 +1,261 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Анализ текста на нескольких языках, где каждый алфавит зашифрован своим сдвигом.
+ * За один проход текст делится на участки одного алфавита, а буквы и триграммы
+ * каждого алфавита попадают в его собственные гистограммы ShiftScorer.
+ * Затем сдвиг каждого алфавита подбирается независимо.
+ */
+public final class SegmentedAnalyzer {
+
+    // Номер алфавита для участка, в котором еще не было букв
+    private static final int NO_ALPHABET = -1;
+
+    // Отдельные сдвиги применяются, только если у каждого алфавита текста не меньше
+    // MIN_LETTERS букв и сдвиг хотя бы одного алфавита оценивается заметно выше
+    // (на MIN_GAIN относительно), чем общий сдвиг преобладающего алфавита
+    static final int MIN_LETTERS = 20;
+    static final double MIN_GAIN = 0.1;
+
+    private SegmentedAnalyzer() {
+    }
+
+    /**
+     * Анализ для английского и русского алфавитов
+     */
+    public static Result analyze(String ciphertext) {
+        return analyze(ciphertext, AlphabetSet.DEFAULT);
+    }
+
+    /**
+     * Анализ для заданного набора алфавитов
+     */
+    public static Result analyze(String ciphertext, AlphabetSet alphabets) {
+        ShiftScorer scorer = new ShiftScorer(alphabets);
+        List<Segment> segments = new ArrayList<>();
+
+        // Символы, не являющиеся буквами, относятся к текущему участку
+        int segmentStart = 0;
+        int segmentAlphabet = NO_ALPHABET;
+        for (int i = 0; i < ciphertext.length(); i++) {
+            int code = scorer.acceptChar(ciphertext.charAt(i));
+            if (code < 0) {
+                continue;
+            }
+            int alphabet = code >>> AlphabetSet.CODE_SHIFT;
+            if (alphabet != segmentAlphabet) {
+                if (segmentAlphabet != NO_ALPHABET) {
+                    segments.add(new Segment(segmentStart, i, alphabets.get(segmentAlphabet).name()));
+                    segmentStart = i;
+                }
+                segmentAlphabet = alphabet;
+            }
+        }
+        if (segmentAlphabet != NO_ALPHABET) {
+            segments.add(new Segment(segmentStart, ciphertext.length(), alphabets.get(segmentAlphabet).name()));
+        }
+
+        // Общий сдвиг - как у Analyzer.findBestShift (по преобладающему алфавиту)
+        String dominant = scorer.language();
+        int singleShift = Analyzer.bestShift(scorer.scores(dominant, scorer.shiftCount(dominant)),
+                scorer.shiftCount(dominant));
+
+        int[] shifts = new int[alphabets.size()];
+        double[] scores = new double[alphabets.size()];
+        double[] singleScores = new double[alphabets.size()];
+        long[] letterCounts = new long[alphabets.size()];
+        for (int a = 0; a < alphabets.size(); a++) {
+            String language = alphabets.get(a).name();
+            letterCounts[a] = scorer.letterCount(language);
+            if (letterCounts[a] == 0) {
+                continue;
+            }
+            // Нулевой сдвиг тоже возможен: один из алфавитов может быть не зашифрован
+            double[] shiftScores = scorer.scores(language, scorer.shiftCount(language));
+            for (int shift = 1; shift < shiftScores.length; shift++) {
+                if (shiftScores[shift] > shiftScores[shifts[a]]) {
+                    shifts[a] = shift;
+                }
+            }
+            scores[a] = shiftScores[shifts[a]];
+            singleScores[a] = shiftScores[Math.floorMod(singleShift, shiftScores.length)];
+        }
+        return new Result(alphabets, shifts, scores, letterCounts, Collections.unmodifiableList(segments),
+                singleShift, singleScores);
+    }
+
+    /**
+     * Проверка, встречаются ли в тексте буквы нескольких алфавитов набора.
+     * Просмотр прекращается на первой букве второго алфавита. Отдельные
+     * буквы другого алфавита (аббревиатуры, названия) обычны и в тексте,
+     * зашифрованном одним сдвигом, поэтому решение о раздельных сдвигах
+     * принимает Result.isSplit.
+     */
+    public static boolean isMixed(CharSequence text, AlphabetSet alphabets) {
+        int first = NO_ALPHABET;
+        for (int i = 0; i < text.length(); i++) {
+            int code = alphabets.code(text.charAt(i));
+            if (code < 0) {
+                continue;
+            }
+            int alphabet = code >>> AlphabetSet.CODE_SHIFT;
+            if (first == NO_ALPHABET) {
+                first = alphabet;
+            } else if (alphabet != first) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Участок текста [start, end), буквы которого относятся к одному алфавиту
+     */
+    public static class Segment {
+        public final int start;
+        public final int end;
+        public final String language;
+
+        public Segment(int start, int end, String language) {
+            this.start = start;
+            this.end = end;
+            this.language = language;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s [%d, %d)", language, start, end);
+        }
+    }
+
+    /**
+     * Сдвиги по алфавитам и участки текста.
+     * Для алфавита без букв в тексте сдвиг равен 0.
+     */
+    public static class Result {
+        public final AlphabetSet alphabets;
+        public final List<Segment> segments;
+        private final int[] shifts;
+        private final double[] scores;
+        private final long[] letterCounts;
+
+        // Общий сдвиг преобладающего алфавита и оценки каждого алфавита при нем
+        private final int singleShift;
+        private final double[] singleScores;
+
+        public Result(AlphabetSet alphabets, int[] shifts, double[] scores, long[] letterCounts,
+                      List<Segment> segments) {
+            this(alphabets, shifts, scores, letterCounts, segments, 0, scores);
+        }
+
+        Result(AlphabetSet alphabets, int[] shifts, double[] scores, long[] letterCounts,
+               List<Segment> segments, int singleShift, double[] singleScores) {
+            this.alphabets = alphabets;
+            this.shifts = shifts.clone();
+            this.scores = scores.clone();
+            this.letterCounts = letterCounts.clone();
+            this.segments = segments;
+            this.singleShift = singleShift;
+            this.singleScores = singleScores.clone();
+        }
+
+        /**
+         * Сдвиг для языка
+         */
+        public int shift(String language) {
+            return shifts[index(language)];
+        }
+
+        /**
+         * Оценка лучшего сдвига для языка
+         */
+        public double score(String language) {
+            return scores[index(language)];
+        }
+
+        /**
+         * Количество букв языка в тексте
+         */
+        public long letterCount(String language) {
+            return letterCounts[index(language)];
+        }
+
+        /**
+         * Сдвиги в порядке алфавитов набора
+         */
+        public int[] shifts() {
+            return shifts.clone();
+        }
+
+        /**
+         * Встречаются ли в тексте буквы нескольких алфавитов
+         */
+        public boolean isMixed() {
+            int present = 0;
+            for (long count : letterCounts) {
+                if (count > 0) {
+                    present++;
+                }
+            }
+            return present > 1;
+        }
+
+        /**
+         * Лучше ли раздельные сдвиги общего: у каждого алфавита текста не меньше
+         * MIN_LETTERS букв, и хотя бы один алфавит со своим сдвигом оценивается
+         * выше, чем при общем сдвиге, не менее чем на MIN_GAIN. Иначе текст
+         * дешифруется одним сдвигом (Analyzer.findBestShift).
+         */
+        public boolean isSplit() {
+            if (!isMixed()) {
+                return false;
+            }
+            for (long count : letterCounts) {
+                if (count > 0 && count < MIN_LETTERS) {
+                    return false;
+                }
+            }
+            for (int a = 0; a < shifts.length; a++) {
+                int single = Math.floorMod(singleShift, alphabets.get(a).size());
+                if (letterCounts[a] > 0 && shifts[a] != single
+                        && scores[a] > singleScores[a] + Math.abs(singleScores[a]) * MIN_GAIN) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Дешифрование текста найденными сдвигами
+         */
+        public String decrypt(String ciphertext) {
+            return CaesarCipher.decrypt(ciphertext, shifts, alphabets);
+        }
+
+        private int index(String language) {
+            int index = alphabets.indexOf(language);
+            if (index < 0) {
+                throw new IllegalArgumentException("Language is not in the alphabet set: " + language);
+            }
+            return index;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (int a = 0; a < shifts.length; a++) {
+                if (letterCounts[a] == 0) {
+                    continue;
+                }
+                if (sb.length() > 0) {
+                    sb.append(", ");
+                }
+                sb.append(String.format("%s: shift %d (Score: %.3f, %d letters)",
+                        alphabets.get(a).name(), shifts[a], scores[a], letterCounts[a]));
+            }
+            return sb.append(" in ").append(segments.size()).append(" segments").toString();
+        }
+    }
+}
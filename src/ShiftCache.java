@@ -0,0 +1,304 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Ограниченный кэш результатов анализа сдвига для повторяющихся шифртекстов.
+ * Ключ - 64-битный хэш текста и его длина; хранится только ранжированный
+ * список сдвигов с оценками, а расшифрованные тексты строятся заново по сдвигу.
+ *
+ * Кэш разделен на полосы (каждая - LinkedHashMap в порядке доступа со своей
+ * блокировкой), поэтому потоки, работающие с разными текстами, почти не
+ * конкурируют. Вытесняются давно не использованные записи, как только полоса
+ * превышает свою долю лимита записей или оценочного объема памяти.
+ */
+public final class ShiftCache {
+
+    // Количество полос (степень двойки)
+    private static final int STRIPES = 16;
+
+    // Оценка объема записи в байтах: объекты записи и ключа плюс массивы сдвигов и оценок
+    private static final int ENTRY_OVERHEAD = 96;
+    private static final int BYTES_PER_SHIFT = Integer.BYTES + Double.BYTES;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Кэш не больше чем на maxEntries записей
+     */
+    public ShiftCache(int maxEntries) {
+        this(maxEntries, Long.MAX_VALUE);
+    }
+
+    /**
+     * Кэш не больше чем на maxEntries записей и maxWeight байтов (оценочно)
+     */
+    public ShiftCache(int maxEntries, long maxWeight) {
+        if (maxEntries < 1 || maxWeight < 1) {
+            throw new IllegalArgumentException("Cache limits must be positive");
+        }
+        int entriesPerStripe = Math.max(1, (maxEntries + STRIPES - 1) / STRIPES);
+        long weightPerStripe = Math.max(1, maxWeight / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(entriesPerStripe, weightPerStripe);
+        }
+    }
+
+    /**
+     * Ранжирование из кэша или вычисленное функцией loader (и сохраненное в кэше).
+     * Функция вызывается без блокировки, поэтому одновременные промахи по одному
+     * тексту могут вычислить результат дважды.
+     */
+    public Ranking get(String ciphertext, AlphabetSet alphabets, Function<String, Ranking> loader) {
+        long hash = hash(ciphertext);
+        Key key = new Key(hash, ciphertext.length());
+        Stripe stripe = stripes[(int) (hash >>> 32) & (STRIPES - 1)];
+
+        Ranking ranking = stripe.get(key);
+        // Набор алфавитов проверяется при попадании: другой набор дает другое ранжирование
+        if (ranking != null && ranking.alphabets == alphabets) {
+            hits.increment();
+            if (Metrics.ENABLED) {
+                Metrics.RESULT_CACHE_HITS.increment();
+            }
+            return ranking;
+        }
+
+        misses.increment();
+        if (Metrics.ENABLED) {
+            Metrics.RESULT_CACHE_MISSES.increment();
+        }
+        ranking = loader.apply(ciphertext);
+        int evicted = stripe.put(key, ranking);
+        if (evicted > 0) {
+            evictions.add(evicted);
+            if (Metrics.ENABLED) {
+                Metrics.RESULT_CACHE_EVICTIONS.add(evicted);
+            }
+        }
+        return ranking;
+    }
+
+    /**
+     * Очистка кэша (статистика сохраняется)
+     */
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    /**
+     * Текущая статистика кэша
+     */
+    public Stats stats() {
+        long size = 0;
+        long weight = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.entries.size();
+                weight += stripe.weight;
+            }
+        }
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), size, weight);
+    }
+
+    /**
+     * 64-битный хэш текста: символы обрабатываются по четыре за шаг,
+     * результат перемешивается финальной функцией MurmurHash3
+     */
+    static long hash(CharSequence text) {
+        long h = 0x9E3779B97F4A7C15L ^ text.length();
+        int length = text.length();
+        int i = 0;
+        for (; i + 4 <= length; i += 4) {
+            long block = text.charAt(i)
+                    | (long) text.charAt(i + 1) << 16
+                    | (long) text.charAt(i + 2) << 32
+                    | (long) text.charAt(i + 3) << 48;
+            h = Long.rotateLeft(h ^ block * 0x87C37B91114253D5L, 31) * 0x4CF5AD432745937FL;
+        }
+        for (; i < length; i++) {
+            h = Long.rotateLeft(h ^ text.charAt(i) * 0x87C37B91114253D5L, 31) * 0x4CF5AD432745937FL;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Ключ записи: хэш и длина текста
+     */
+    private static final class Key {
+        final long hash;
+        final int length;
+
+        Key(long hash, int length) {
+            this.hash = hash;
+            this.length = length;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash && length == other.length;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) hash;
+        }
+    }
+
+    /**
+     * Полоса кэша: LRU-словарь со своей блокировкой
+     */
+    private static final class Stripe {
+        final LinkedHashMap<Key, Ranking> entries = new LinkedHashMap<>(64, 0.75f, true);
+        final int maxEntries;
+        final long maxWeight;
+        long weight;
+
+        Stripe(int maxEntries, long maxWeight) {
+            this.maxEntries = maxEntries;
+            this.maxWeight = maxWeight;
+        }
+
+        synchronized Ranking get(Key key) {
+            return entries.get(key);
+        }
+
+        /**
+         * Сохранение записи; возвращает количество вытесненных записей
+         */
+        synchronized int put(Key key, Ranking ranking) {
+            Ranking previous = entries.put(key, ranking);
+            if (previous != null) {
+                weight -= previous.weight();
+            }
+            weight += ranking.weight();
+
+            int evicted = 0;
+            Iterator<Map.Entry<Key, Ranking>> eldest = entries.entrySet().iterator();
+            while ((entries.size() > maxEntries || weight > maxWeight) && entries.size() > 1) {
+                Ranking removed = eldest.next().getValue();
+                eldest.remove();
+                weight -= removed.weight();
+                evicted++;
+            }
+            return evicted;
+        }
+
+        synchronized void clear() {
+            entries.clear();
+            weight = 0;
+        }
+    }
+
+    /**
+     * Ранжированные сдвиги текста: сдвиги по убыванию оценки и оценка каждого сдвига
+     */
+    public static final class Ranking {
+        public final String language;
+        public final AlphabetSet alphabets;
+        private final int[] shifts;
+        private final double[] scores;
+
+        /**
+         * scores[shift] - оценка сдвига; в ранжирование входят сдвиги 1..scores.length-1
+         */
+        public Ranking(String language, AlphabetSet alphabets, double[] scores) {
+            this.language = language;
+            this.alphabets = alphabets;
+            this.scores = scores.clone();
+
+            Integer[] order = new Integer[Math.max(0, scores.length - 1)];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i + 1;
+            }
+            // Сортировка по убыванию рейтинга (устойчивая: при равенстве - меньший сдвиг)
+            Arrays.sort(order, (a, b) -> Double.compare(scores[b], scores[a]));
+            this.shifts = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                shifts[i] = order[i];
+            }
+        }
+
+        /**
+         * Количество ранжированных сдвигов
+         */
+        public int size() {
+            return shifts.length;
+        }
+
+        /**
+         * Сдвиг на заданном месте рейтинга (0 - лучший)
+         */
+        public int shift(int rank) {
+            return shifts[rank];
+        }
+
+        /**
+         * Оценка сдвига
+         */
+        public double score(int shift) {
+            return scores[shift];
+        }
+
+        /**
+         * Лучший сдвиг или 0, если все оценки нулевые (как Analyzer.findBestShift)
+         */
+        public int bestShift() {
+            return shifts.length > 0 && scores[shifts[0]] > Double.MIN_VALUE ? shifts[0] : 0;
+        }
+
+        long weight() {
+            return ENTRY_OVERHEAD + (long) BYTES_PER_SHIFT * scores.length;
+        }
+    }
+
+    /**
+     * Статистика кэша
+     */
+    public static final class Stats {
+        public final long hits;
+        public final long misses;
+        public final long evictions;
+        public final long size;
+        public final long weight;
+
+        public Stats(long hits, long misses, long evictions, long size, long weight) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.size = size;
+            this.weight = weight;
+        }
+
+        /**
+         * Доля попаданий среди всех обращений
+         */
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Cache: %d hits, %d misses (hit rate %.1f%%), %d evictions, %d entries, ~%d bytes",
+                    hits, misses, hitRate() * 100, evictions, size, weight);
+        }
+    }
+}
@@ -0,0 +1,485 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Инвариантный к сдвигу индекс архива сообщений, зашифрованных шифром Цезаря
+ * с неизвестными сдвигами. Сдвиг не меняет разности соседних букв слова
+ * (по модулю размера алфавита), поэтому индексируются n-граммы разностей:
+ * каждые NGRAM подряд идущих букв одного алфавита дают терм из NGRAM - 1
+ * разностей. В списке вхождений терма хранятся сообщение, позиция и первая
+ * буква, по которой при поиске восстанавливается сдвиг сообщения.
+ *
+ * Индекс - каталог файлов-сегментов (см. ShiftIndexWriter). Сегменты
+ * отображаются в память только для чтения; словарь термов отсортирован и
+ * просматривается двоичным поиском, списки вхождений сжаты (varint и разности).
+ * Поиск слов открытого текста не обращается к исходному архиву.
+ * Объект потокобезопасен.
+ */
+public final class ShiftIndex implements Closeable {
+
+    // Количество букв в n-грамме (терм - NGRAM - 1 разностей)
+    static final int NGRAM = 4;
+
+    // Формат файлов сегментов
+    static final int MAGIC = 0x43534958;
+    static final int VERSION = 1;
+    static final String SEGMENT_PREFIX = "segment-";
+    static final String SEGMENT_SUFFIX = ".csx";
+
+    // Терм: номер алфавита в старших битах, разности - в младших 21 бите
+    // (размер алфавита не больше Byte.MAX_VALUE, 127^3 < 2^21)
+    private static final int TERM_SHIFT = 21;
+
+    private final AlphabetSet alphabets;
+    private final List<Segment> segments;
+
+    private ShiftIndex(AlphabetSet alphabets, List<Segment> segments) {
+        this.alphabets = alphabets;
+        this.segments = segments;
+    }
+
+    /**
+     * Открытие индекса в каталоге (пустой индекс, если сегментов нет)
+     */
+    public static ShiftIndex open(Path directory) throws IOException {
+        List<Segment> segments = new ArrayList<>();
+        String names = null;
+        for (Path file : segmentFiles(directory)) {
+            Segment segment = Segment.open(file);
+            if (names != null && !names.equals(segment.alphabetNames)) {
+                throw new IOException("Segments use different alphabets: " + file);
+            }
+            names = segment.alphabetNames;
+            segments.add(segment);
+        }
+        AlphabetSet alphabets = names == null ? AlphabetSet.DEFAULT : AlphabetSet.of(names.split(","));
+        return new ShiftIndex(alphabets, List.copyOf(segments));
+    }
+
+    /**
+     * Набор алфавитов, по которому построен индекс
+     */
+    public AlphabetSet alphabets() {
+        return alphabets;
+    }
+
+    /**
+     * Количество проиндексированных сообщений
+     */
+    public long messageCount() {
+        long count = 0;
+        for (Segment segment : segments) {
+            count += segment.messageCount;
+        }
+        return count;
+    }
+
+    /**
+     * Поиск сообщений, содержащих все слова запроса при одном сдвиге.
+     * Слова короче NGRAM букв не индексируются и при поиске не учитываются;
+     * в запросе должно быть хотя бы одно слово из NGRAM и более букв
+     * (иначе - InvalidQueryException).
+     */
+    public List<Hit> search(String query) {
+        List<List<int[]>> runs = runs(query);
+        if (runs.isEmpty()) {
+            throw new InvalidQueryException("Query must contain a word of at least " + NGRAM + " letters");
+        }
+        List<Hit> hits = new ArrayList<>();
+        for (Segment segment : segments) {
+            segment.search(runs, alphabets, hits);
+        }
+        return hits;
+    }
+
+    /**
+     * Термы запроса, сгруппированные по словам: {терм, позиция, первая буква}
+     */
+    private List<List<int[]>> runs(String query) {
+        List<List<int[]>> runs = new ArrayList<>();
+        int[] last = {-2, -1};
+        terms(query, alphabets, (term, offset, letter) -> {
+            if (offset != last[0] + 1 || term >>> TERM_SHIFT != last[1]) {
+                runs.add(new ArrayList<>());
+            }
+            runs.get(runs.size() - 1).add(new int[] {term, offset, letter});
+            last[0] = offset;
+            last[1] = term >>> TERM_SHIFT;
+        });
+        return runs;
+    }
+
+    @Override
+    public void close() {
+        // Отображения освобождаются сборщиком мусора; каналы закрыты при открытии.
+        // Список сегментов неизменяем, поэтому поиск из других потоков не ломается
+    }
+
+    /**
+     * Получатель термов текста
+     */
+    interface TermSink {
+        void accept(int term, int offset, int firstLetter);
+    }
+
+    /**
+     * Термы текста: для каждых NGRAM подряд идущих букв кольца одного алфавита -
+     * терм, позиция первой буквы и ее номер. Прочие символы, дополнительные
+     * буквы и смена алфавита разрывают последовательность.
+     */
+    static void terms(CharSequence text, AlphabetSet alphabets, TermSink sink) {
+        int[] ringSizes = new int[alphabets.size()];
+        for (int a = 0; a < ringSizes.length; a++) {
+            ringSizes[a] = alphabets.get(a).size();
+        }
+        int[] window = new int[NGRAM];
+        int runLength = 0;
+        int runAlphabet = -1;
+        for (int i = 0; i < text.length(); i++) {
+            int code = alphabets.code(text.charAt(i));
+            int alphabet = code >>> AlphabetSet.CODE_SHIFT;
+            int letter = code & AlphabetSet.LETTER_MASK;
+            if (code < 0 || letter >= ringSizes[alphabet]) {
+                runLength = 0;
+                continue;
+            }
+            if (alphabet != runAlphabet) {
+                runLength = 0;
+                runAlphabet = alphabet;
+            }
+            window[runLength % NGRAM] = letter;
+            runLength++;
+            if (runLength >= NGRAM) {
+                int size = ringSizes[alphabet];
+                int first = window[(runLength - NGRAM) % NGRAM];
+                int term = 0;
+                int previous = first;
+                for (int k = 1; k < NGRAM; k++) {
+                    int current = window[(runLength - NGRAM + k) % NGRAM];
+                    term = term * size + Math.floorMod(current - previous, size);
+                    previous = current;
+                }
+                sink.accept((alphabet << TERM_SHIFT) | term, i - NGRAM + 1, first);
+            }
+        }
+    }
+
+    /**
+     * Файлы сегментов каталога в порядке номеров
+     */
+    static List<Path> segmentFiles(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        files.sort(null);
+        return files;
+    }
+
+    /**
+     * Сегмент индекса, отображенный в память.
+     * Формат: MAGIC, VERSION, имена алфавитов (длина и UTF-8), первое сообщение,
+     * количество сообщений, количество термов, термы по возрастанию, количество
+     * вхождений каждого терма, начала списков вхождений (термов + 1) и сами списки.
+     * Вхождение: разность номера сообщения (0 - то же сообщение), позиция
+     * (для того же сообщения - разность с предыдущей) и первая буква, все - varint.
+     */
+    static final class Segment {
+        final String alphabetNames;
+        final long firstMessage;
+        final int messageCount;
+        private final ByteBuffer buffer;
+        private final int termCount;
+        private final int termsStart;
+        private final int countsStart;
+        private final int offsetsStart;
+        private final int postingsStart;
+
+        private Segment(ByteBuffer buffer, Path file) throws IOException {
+            this.buffer = buffer;
+            long size = buffer.capacity();
+            if (size < 12 || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Not a shift index segment: " + file);
+            }
+            int namesLength = buffer.getInt(8);
+            if (namesLength < 0 || 12L + namesLength + 16 > size) {
+                throw new IOException("Corrupt shift index segment header: " + file);
+            }
+            byte[] names = new byte[namesLength];
+            buffer.get(12, names);
+            this.alphabetNames = new String(names, StandardCharsets.UTF_8);
+            int position = 12 + namesLength;
+            this.firstMessage = buffer.getLong(position);
+            this.messageCount = buffer.getInt(position + 8);
+            this.termCount = buffer.getInt(position + 12);
+
+            // Словарь, счетчики и начала списков должны помещаться в файл
+            long postings = position + 16L + (long) termCount * (2 * Integer.BYTES + Long.BYTES) + Long.BYTES;
+            if (messageCount < 0 || termCount < 0 || postings > size) {
+                throw new IOException("Corrupt shift index segment dictionary: " + file);
+            }
+            this.termsStart = position + 16;
+            this.countsStart = termsStart + termCount * Integer.BYTES;
+            this.offsetsStart = countsStart + termCount * Integer.BYTES;
+            this.postingsStart = (int) postings;
+
+            // Списки вхождений идут подряд и не выходят за конец файла
+            long previous = 0;
+            for (int i = 0; i <= termCount; i++) {
+                long offset = buffer.getLong(offsetsStart + i * Long.BYTES);
+                if (offset < previous || postingsStart + offset > size || (i == 0 && offset != 0)) {
+                    throw new IOException("Corrupt shift index segment postings: " + file);
+                }
+                previous = offset;
+            }
+        }
+
+        static Segment open(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new IOException("Shift index segment is too large: " + file);
+                }
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                return new Segment(buffer, file);
+            }
+        }
+
+        /**
+         * Номер терма в словаре или -1
+         */
+        private int find(int term) {
+            int low = 0;
+            int high = termCount - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int value = buffer.getInt(termsStart + middle * Integer.BYTES);
+                if (value < term) {
+                    low = middle + 1;
+                } else if (value > term) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Совпадения всех слов запроса в сообщениях сегмента
+         */
+        void search(List<List<int[]>> runs, AlphabetSet alphabets, List<Hit> hits) {
+            // Для каждого слова: сообщение -> найденные {позиция, сдвиг}
+            List<Map<Integer, List<int[]>>> found = new ArrayList<>();
+            for (List<int[]> run : runs) {
+                Map<Integer, List<int[]>> occurrences = searchRun(run, alphabets);
+                if (occurrences.isEmpty()) {
+                    return;
+                }
+                found.add(occurrences);
+            }
+
+            for (Map.Entry<Integer, List<int[]>> entry : found.get(0).entrySet()) {
+                int message = entry.getKey();
+                // Сдвиги, общие для всех слов одного алфавита
+                Map<Integer, Set<Integer>> shiftsByAlphabet = new HashMap<>();
+                boolean matched = true;
+                for (int r = 0; r < runs.size() && matched; r++) {
+                    List<int[]> occurrences = found.get(r).get(message);
+                    if (occurrences == null) {
+                        matched = false;
+                        break;
+                    }
+                    Set<Integer> shifts = new HashSet<>();
+                    for (int[] occurrence : occurrences) {
+                        shifts.add(occurrence[1]);
+                    }
+                    int alphabet = runs.get(r).get(0)[0] >>> TERM_SHIFT;
+                    Set<Integer> common = shiftsByAlphabet.get(alphabet);
+                    if (common == null) {
+                        shiftsByAlphabet.put(alphabet, shifts);
+                    } else {
+                        common.retainAll(shifts);
+                        matched = !common.isEmpty();
+                    }
+                }
+                if (!matched) {
+                    continue;
+                }
+                int alphabet = runs.get(0).get(0)[0] >>> TERM_SHIFT;
+                Set<Integer> shifts = shiftsByAlphabet.get(alphabet);
+                int[] first = null;
+                for (int[] occurrence : entry.getValue()) {
+                    if (shifts.contains(occurrence[1]) && (first == null || occurrence[0] < first[0])) {
+                        first = occurrence;
+                    }
+                }
+                hits.add(new Hit(firstMessage + message, first[0], first[1], alphabets.get(alphabet).name()));
+            }
+        }
+
+        /**
+         * Вхождения одного слова: начинаются с самого редкого терма,
+         * остальные термы оставляют только позиции, где слово продолжается
+         */
+        private Map<Integer, List<int[]>> searchRun(List<int[]> run, AlphabetSet alphabets) {
+            int[] indexes = new int[run.size()];
+            int rarest = 0;
+            for (int j = 0; j < run.size(); j++) {
+                indexes[j] = find(run.get(j)[0]);
+                if (indexes[j] < 0) {
+                    return Map.of();
+                }
+                if (count(indexes[j]) < count(indexes[rarest])) {
+                    rarest = j;
+                }
+            }
+
+            int size = alphabets.get(run.get(0)[0] >>> TERM_SHIFT).size();
+            int runStart = run.get(0)[1];
+            Map<Long, Integer> candidates = new HashMap<>();
+            int[] term = run.get(rarest);
+            int delta = term[1] - runStart;
+            decode(indexes[rarest], (message, offset, letter) -> {
+                if (offset >= delta) {
+                    candidates.put(key(message, offset - delta), Math.floorMod(letter - term[2], size));
+                }
+            });
+
+            Integer[] order = new Integer[run.size()];
+            for (int j = 0; j < order.length; j++) {
+                order[j] = j;
+            }
+            Arrays.sort(order, (a, b) -> Integer.compare(count(indexes[a]), count(indexes[b])));
+            for (int j : order) {
+                if (j == rarest || candidates.isEmpty()) {
+                    continue;
+                }
+                int shift = run.get(j)[1] - runStart;
+                Set<Long> present = new HashSet<>();
+                decode(indexes[j], (message, offset, letter) -> {
+                    long key = key(message, offset - shift);
+                    if (candidates.containsKey(key)) {
+                        present.add(key);
+                    }
+                });
+                candidates.keySet().retainAll(present);
+            }
+
+            Map<Integer, List<int[]>> occurrences = new HashMap<>();
+            for (Map.Entry<Long, Integer> candidate : candidates.entrySet()) {
+                int message = (int) (candidate.getKey() >>> 32);
+                int offset = (int) (long) candidate.getKey();
+                occurrences.computeIfAbsent(message, m -> new ArrayList<>())
+                        .add(new int[] {offset, candidate.getValue()});
+            }
+            return occurrences;
+        }
+
+        private static long key(int message, int offset) {
+            return (long) message << 32 | (offset & 0xFFFFFFFFL);
+        }
+
+        private int count(int index) {
+            return buffer.getInt(countsStart + index * Integer.BYTES);
+        }
+
+        /**
+         * Разбор списка вхождений терма
+         */
+        private void decode(int index, PostingSink sink) {
+            long start = buffer.getLong(offsetsStart + index * Long.BYTES);
+            long end = buffer.getLong(offsetsStart + (index + 1) * Long.BYTES);
+            // Копия буфера со своей позицией - поиск из нескольких потоков безопасен
+            ByteBuffer postings = buffer.duplicate();
+            postings.position((int) (postingsStart + start));
+            int limit = (int) (postingsStart + end);
+            int message = -1;
+            int offset = 0;
+            while (postings.position() < limit) {
+                int messageDelta = readVarint(postings);
+                int position = readVarint(postings);
+                if (messageDelta > 0) {
+                    message += messageDelta;
+                    offset = position;
+                } else {
+                    offset += position;
+                }
+                sink.accept(message, offset, readVarint(postings));
+            }
+        }
+
+        private static int readVarint(ByteBuffer buffer) {
+            int value = 0;
+            int bits = 0;
+            byte b;
+            do {
+                b = buffer.get();
+                value |= (b & 0x7F) << bits;
+                bits += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+
+    /**
+     * Получатель вхождений терма
+     */
+    private interface PostingSink {
+        void accept(int message, int offset, int firstLetter);
+    }
+
+    /**
+     * Запрос, который нельзя выполнить по индексу (нет слов из NGRAM и более букв)
+     */
+    public static class InvalidQueryException extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        public InvalidQueryException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Найденное сообщение: номер, позиция первого слова запроса и сдвиг,
+     * которым сообщение зашифровано (по алфавиту первого слова)
+     */
+    public static class Hit {
+        public final long messageId;
+        public final int offset;
+        public final int shift;
+        public final String language;
+
+        public Hit(long messageId, int offset, int shift, String language) {
+            this.messageId = messageId;
+            this.offset = offset;
+            this.shift = shift;
+            this.language = language;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Message %d at %d (Shift %d, Language: %s)", messageId, offset, shift, language);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Построение индекса ShiftIndex: сообщения добавляются по одному и получают
+ * последовательные номера, списки вхождений накапливаются в памяти и
+ * записываются в новый файл-сегмент при заполнении буфера или при закрытии.
+ * Если в каталоге уже есть сегменты, нумерация продолжается. Сегмент
+ * записывается во временный файл и переименовывается, поэтому читатели
+ * никогда не видят его недописанным. Объект не потокобезопасен.
+ */
+public final class ShiftIndexWriter implements Closeable {
+
+    // Объем списков вхождений в памяти, после которого записывается сегмент
+    private static final int FLUSH_BYTES = 64 * 1024 * 1024;
+
+    private final Path directory;
+    private final AlphabetSet alphabets;
+    private final String alphabetNames;
+    private final Map<Integer, Postings> postings = new HashMap<>();
+    private long bufferedBytes;
+    private long firstMessage;
+    private int messageCount;
+    private int nextSegment;
+
+    private ShiftIndexWriter(Path directory, AlphabetSet alphabets, long nextMessage, int nextSegment) {
+        this.directory = directory;
+        this.alphabets = alphabets;
+        this.alphabetNames = names(alphabets);
+        this.firstMessage = nextMessage;
+        this.nextSegment = nextSegment;
+    }
+
+    /**
+     * Запись в индекс для английского и русского алфавитов
+     */
+    public static ShiftIndexWriter open(Path directory) throws IOException {
+        return open(directory, AlphabetSet.DEFAULT);
+    }
+
+    /**
+     * Запись в индекс для заданного набора алфавитов; каталог создается при
+     * необходимости, существующие сегменты должны быть построены по тому же набору
+     */
+    public static ShiftIndexWriter open(Path directory, AlphabetSet alphabets) throws IOException {
+        Files.createDirectories(directory);
+        String names = names(alphabets);
+        long nextMessage = 0;
+        int nextSegment = 0;
+        List<Path> files = ShiftIndex.segmentFiles(directory);
+        for (Path file : files) {
+            ShiftIndex.Segment segment = ShiftIndex.Segment.open(file);
+            if (!segment.alphabetNames.equals(names)) {
+                throw new IllegalArgumentException("Index " + directory + " uses alphabets " + segment.alphabetNames);
+            }
+            nextMessage = Math.max(nextMessage, segment.firstMessage + segment.messageCount);
+            String name = file.getFileName().toString();
+            int number = Integer.parseInt(name.substring(ShiftIndex.SEGMENT_PREFIX.length(),
+                    name.length() - ShiftIndex.SEGMENT_SUFFIX.length()));
+            nextSegment = Math.max(nextSegment, number + 1);
+        }
+        return new ShiftIndexWriter(directory, alphabets, nextMessage, nextSegment);
+    }
+
+    private static String names(AlphabetSet alphabets) {
+        StringBuilder names = new StringBuilder();
+        for (Alphabet alphabet : alphabets.alphabets()) {
+            if (names.length() > 0) {
+                names.append(',');
+            }
+            names.append(alphabet.name());
+        }
+        return names.toString();
+    }
+
+    /**
+     * Добавление сообщения; возвращает его номер в индексе
+     */
+    public long add(CharSequence message) throws IOException {
+        int local = messageCount++;
+        ShiftIndex.terms(message, alphabets, (term, offset, letter) -> {
+            Postings list = postings.computeIfAbsent(term, t -> new Postings());
+            int before = list.size;
+            list.add(local, offset, letter);
+            bufferedBytes += list.size - before;
+        });
+        long id = firstMessage + local;
+        if (bufferedBytes >= FLUSH_BYTES) {
+            flush();
+        }
+        return id;
+    }
+
+    /**
+     * Номер, который получит следующее сообщение
+     */
+    public long nextMessageId() {
+        return firstMessage + messageCount;
+    }
+
+    /**
+     * Запись накопленных сообщений в новый сегмент
+     */
+    public void flush() throws IOException {
+        if (messageCount == 0) {
+            return;
+        }
+        int[] terms = new int[postings.size()];
+        int i = 0;
+        for (int term : postings.keySet()) {
+            terms[i++] = term;
+        }
+        Arrays.sort(terms);
+
+        String name = String.format("%s%06d%s", ShiftIndex.SEGMENT_PREFIX, nextSegment, ShiftIndex.SEGMENT_SUFFIX);
+        Path target = directory.resolve(name);
+        Path temporary = directory.resolve(name + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temporary), 64 * 1024))) {
+            byte[] names = alphabetNames.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(ShiftIndex.MAGIC);
+            out.writeInt(ShiftIndex.VERSION);
+            out.writeInt(names.length);
+            out.write(names);
+            out.writeLong(firstMessage);
+            out.writeInt(messageCount);
+            out.writeInt(terms.length);
+            for (int term : terms) {
+                out.writeInt(term);
+            }
+            for (int term : terms) {
+                out.writeInt(postings.get(term).count);
+            }
+            long offset = 0;
+            for (int term : terms) {
+                out.writeLong(offset);
+                offset += postings.get(term).size;
+            }
+            out.writeLong(offset);
+            for (int term : terms) {
+                Postings list = postings.get(term);
+                out.write(list.data, 0, list.size);
+            }
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+
+        nextSegment++;
+        firstMessage += messageCount;
+        messageCount = 0;
+        postings.clear();
+        bufferedBytes = 0;
+    }
+
+    /**
+     * Запись оставшихся сообщений
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    /**
+     * Список вхождений одного терма в формате сегмента (см. ShiftIndex.Segment)
+     */
+    private static final class Postings {
+        byte[] data = new byte[16];
+        int size;
+        int count;
+        int lastMessage = -1;
+        int lastOffset;
+
+        void add(int message, int offset, int letter) {
+            if (message != lastMessage) {
+                writeVarint(message - lastMessage);
+                writeVarint(offset);
+                lastMessage = message;
+            } else {
+                writeVarint(0);
+                writeVarint(offset - lastOffset);
+            }
+            writeVarint(letter);
+            lastOffset = offset;
+            count++;
+        }
+
+        private void writeVarint(int value) {
+            if (size + 5 > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            while ((value & ~0x7F) != 0) {
+                data[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[size++] = (byte) value;
+        }
+    }
+}
@@ -0,0 +1,387 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Оценка всех сдвигов по гистограммам шифртекста.
+ * Текст просматривается один раз: подсчитываются буквы и триграммы внутри слов.
+ * Дешифрование сдвигом только поворачивает эти гистограммы, поэтому оценка
+ * любого сдвига не требует повторного прохода по тексту. Триграммы оцениваются
+ * по языковой модели NgramModel.
+ *
+ * Алфавиты берутся из набора AlphabetSet (по умолчанию английский и русский);
+ * язык текста - имя алфавита, к которому относится больше всего букв.
+ */
+public class ShiftScorer {
+
+    public static final String ENGLISH = Alphabet.ENGLISH.name();
+    public static final String RUSSIAN = Alphabet.RUSSIAN.name();
+
+    // Код предыдущей буквы внутри слова (см. AlphabetSet.code) или разрыв слова
+    private static final int NONE = -1;
+
+    private final AlphabetSet alphabets;
+
+    // Гистограммы букв каждого алфавита (включая дополнительные буквы) и их суммы
+    private final int[][] letters;
+    private final long[] alphabetLetters;
+
+    // Гистограммы триграмм внутри слов, создаются при первой триграмме алфавита
+    private final int[][] trigrams;
+
+    // Ненулевые ячейки гистограмм триграмм (номер алфавита в старших битах):
+    // по ним оцениваются сдвиги и очищаются гистограммы после короткого текста
+    private static final int TOUCHED_SHIFT = 20;
+    private static final int TOUCHED_MASK = (1 << TOUCHED_SHIFT) - 1;
+    private int[] touched = new int[64];
+    private int touchedCount;
+
+    // Прочие буквы (не участвуют в сдвиге, но учитываются в индексе совпадений)
+    private final Map<Character, Integer> otherLetters = new HashMap<>();
+
+    private long totalLetters;
+    private int previous = NONE;
+    private int beforePrevious = NONE;
+
+    /**
+     * Оценка для английского и русского алфавитов
+     */
+    public ShiftScorer() {
+        this(AlphabetSet.DEFAULT);
+    }
+
+    /**
+     * Оценка для заданного набора алфавитов
+     */
+    public ShiftScorer(AlphabetSet alphabets) {
+        this.alphabets = alphabets;
+        this.letters = new int[alphabets.size()][];
+        this.alphabetLetters = new long[alphabets.size()];
+        this.trigrams = new int[alphabets.size()][];
+        for (int a = 0; a < alphabets.size(); a++) {
+            letters[a] = new int[alphabets.get(a).letterCount()];
+        }
+    }
+
+    /**
+     * Подсчет гистограмм для всего текста
+     */
+    public static ShiftScorer of(CharSequence text) {
+        return of(text, AlphabetSet.DEFAULT);
+    }
+
+    /**
+     * Подсчет гистограмм для всего текста и заданного набора алфавитов
+     */
+    public static ShiftScorer of(CharSequence text, AlphabetSet alphabets) {
+        ShiftScorer scorer = new ShiftScorer(alphabets);
+        scorer.accept(text, 0, text.length());
+        return scorer;
+    }
+
+    /**
+     * Набор алфавитов, по которому считаются гистограммы
+     */
+    public AlphabetSet alphabets() {
+        return alphabets;
+    }
+
+    /**
+     * Добавление фрагмента текста к гистограммам
+     */
+    public void accept(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            acceptChar(text.charAt(i));
+        }
+    }
+
+    /**
+     * Добавление фрагмента массива символов к гистограммам
+     */
+    public void accept(char[] chars, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            acceptChar(chars[i]);
+        }
+    }
+
+    /**
+     * Разрыв текста: следующий фрагмент не продолжает триграммы предыдущего
+     */
+    public void breakRun() {
+        previous = NONE;
+        beforePrevious = NONE;
+    }
+
+    /**
+     * Очистка гистограмм для повторного использования объекта с новым текстом.
+     * Обнуляются только затронутые ячейки, поэтому очистка после короткого
+     * сообщения дешевле, чем создание нового объекта.
+     */
+    public void reset() {
+        for (int i = 0; i < touchedCount; i++) {
+            int entry = touched[i];
+            trigrams[entry >>> TOUCHED_SHIFT][entry & TOUCHED_MASK] = 0;
+        }
+        touchedCount = 0;
+        for (int[] counts : letters) {
+            Arrays.fill(counts, 0);
+        }
+        Arrays.fill(alphabetLetters, 0);
+        if (!otherLetters.isEmpty()) {
+            otherLetters.clear();
+        }
+        totalLetters = 0;
+        breakRun();
+    }
+
+    /**
+     * Количество букв, учтенных в гистограммах
+     */
+    public long letterCount() {
+        return totalLetters;
+    }
+
+    /**
+     * Количество букв заданного алфавита
+     */
+    public long letterCount(String language) {
+        return alphabetLetters[alphabetIndex(language)];
+    }
+
+    /**
+     * Добавление одного символа; возвращает его код в наборе (см. AlphabetSet.code)
+     */
+    int acceptChar(char c) {
+        int code = alphabets.code(c);
+        if (code < 0) {
+            // Буквы вне алфавитов шифра и прочие символы разрывают слово
+            char lower = Character.toLowerCase(c);
+            if (Character.isLetter(lower)) {
+                otherLetters.merge(lower, 1, Integer::sum);
+                totalLetters++;
+            }
+            breakRun();
+            return code;
+        }
+
+        int alphabet = code >>> AlphabetSet.CODE_SHIFT;
+        int letter = code & AlphabetSet.LETTER_MASK;
+        letters[alphabet][letter]++;
+        alphabetLetters[alphabet]++;
+        totalLetters++;
+
+        int size = alphabets.get(alphabet).size();
+        if (letter >= size) {
+            // Дополнительные буквы (например, 'ё') не сдвигаются, поэтому разрывают триграммы
+            breakRun();
+            return code;
+        }
+        if (beforePrevious >= 0 && beforePrevious >>> AlphabetSet.CODE_SHIFT == alphabet
+                && previous >>> AlphabetSet.CODE_SHIFT == alphabet) {
+            int index = ((beforePrevious & AlphabetSet.LETTER_MASK) * size
+                    + (previous & AlphabetSet.LETTER_MASK)) * size + letter;
+            increment(alphabet, index);
+        }
+        beforePrevious = previous;
+        previous = code;
+        return code;
+    }
+
+    /**
+     * Добавление гистограмм другого объекта с тем же набором алфавитов
+     * (например, посчитанных в другом потоке по другой части текста).
+     * Триграммы на стыке частей не учитываются.
+     */
+    public void merge(ShiftScorer other) {
+        if (other.alphabets != alphabets) {
+            throw new IllegalArgumentException("Cannot merge scorers for different alphabet sets");
+        }
+        for (int a = 0; a < letters.length; a++) {
+            for (int i = 0; i < letters[a].length; i++) {
+                letters[a][i] += other.letters[a][i];
+            }
+            alphabetLetters[a] += other.alphabetLetters[a];
+        }
+        for (int i = 0; i < other.touchedCount; i++) {
+            int entry = other.touched[i];
+            int alphabet = entry >>> TOUCHED_SHIFT;
+            int index = entry & TOUCHED_MASK;
+            add(alphabet, index, other.trigrams[alphabet][index]);
+        }
+        other.otherLetters.forEach((letter, count) -> otherLetters.merge(letter, count, Integer::sum));
+        totalLetters += other.totalLetters;
+    }
+
+    private void increment(int alphabet, int index) {
+        add(alphabet, index, 1);
+    }
+
+    private void add(int alphabet, int index, int count) {
+        int[] histogram = trigrams[alphabet];
+        if (histogram == null) {
+            int size = alphabets.get(alphabet).size();
+            histogram = new int[size * size * size];
+            trigrams[alphabet] = histogram;
+        }
+        int previousCount = histogram[index];
+        histogram[index] = previousCount + count;
+        if (previousCount == 0) {
+            if (touchedCount == touched.length) {
+                touched = Arrays.copyOf(touched, touchedCount * 2);
+            }
+            touched[touchedCount++] = (alphabet << TOUCHED_SHIFT) | index;
+        }
+    }
+
+    /**
+     * Определяет язык текста по преобладающему алфавиту
+     * (при равенстве - первый алфавит набора)
+     */
+    public String language() {
+        int best = 0;
+        for (int a = 1; a < alphabetLetters.length; a++) {
+            if (alphabetLetters[a] > alphabetLetters[best]) {
+                best = a;
+            }
+        }
+        return alphabets.get(best).name();
+    }
+
+    /**
+     * Количество различных сдвигов для языка (размер алфавита набора)
+     */
+    public int shiftCount(String language) {
+        return alphabets.get(alphabetIndex(language)).size();
+    }
+
+    /**
+     * Оценки для сдвигов 0..count-1 (индекс массива - сдвиг)
+     */
+    public double[] scores(String language, int count) {
+        double[] scores = new double[count];
+        scores(language, scores, count);
+        return scores;
+    }
+
+    /**
+     * Оценки для сдвигов 0..count-1 в начало переданного массива
+     */
+    public void scores(String language, double[] scores, int count) {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        int alphabet = alphabetIndex(language);
+        double coincidence = coincidenceIndex();
+        for (int shift = 0; shift < count; shift++) {
+            scores[shift] = score(shift, alphabet, coincidence);
+        }
+        if (Metrics.ENABLED) {
+            Metrics.CANDIDATES_SCORED.add(count);
+            Metrics.SHIFT_SCORING.recordSince(start);
+        }
+    }
+
+    /**
+     * Общий рейтинг текста, дешифрованного заданным сдвигом
+     */
+    public double score(int shift, String language) {
+        return score(shift, alphabetIndex(language), coincidenceIndex());
+    }
+
+    private int alphabetIndex(String language) {
+        int alphabet = alphabets.indexOf(language);
+        if (alphabet < 0) {
+            throw new IllegalArgumentException("Language is not in the alphabet set: " + language);
+        }
+        return alphabet;
+    }
+
+    private double score(int shift, int alphabet, double coincidence) {
+        Alphabet letters = alphabets.get(alphabet);
+        double frequencyScore = letters.hasFrequencies()
+                ? frequencyScore(alphabet, chiSquared(alphabet, shift)) : 0;
+        NgramModel model = NgramModel.forAlphabet(letters);
+        double trigramScore = model != null ? trigramScore(alphabet, model, shift) : 0;
+
+        // Взвешенная сумма всех оценок
+        return frequencyScore * 0.2 + trigramScore * 0.7 + coincidence * 0.1;
+    }
+
+    /**
+     * Статистика chi-squared для повернутой гистограммы букв
+     * (дополнительные буквы не сдвигаются). Ожидаемые значения считаются
+     * от количества букв этого алфавита, поэтому в смешанном тексте
+     * буквы других алфавитов не искажают оценку.
+     */
+    private double chiSquared(int alphabet, int shift) {
+        Alphabet letters = alphabets.get(alphabet);
+        int[] counts = this.letters[alphabet];
+        long total = alphabetLetters[alphabet];
+        int size = letters.size();
+        double chiSquared = 0;
+        for (int i = 0; i < size; i++) {
+            chiSquared += chiSquaredTerm(counts[(i + shift) % size], letters.frequency(i), total);
+        }
+        for (int i = size; i < counts.length; i++) {
+            chiSquared += chiSquaredTerm(counts[i], letters.frequency(i), total);
+        }
+        return chiSquared;
+    }
+
+    private double chiSquaredTerm(double observed, double frequency, long total) {
+        double expected = (frequency / 100.0) * total;
+        return expected > 0 ? (observed - expected) * (observed - expected) / expected : 0;
+    }
+
+    private double frequencyScore(int alphabet, double chiSquared) {
+        if (alphabetLetters[alphabet] == 0) return 0;
+
+        // Чем меньше chi-squared, тем лучше совпадение
+        return 1.0 / (1.0 + chiSquared / 100.0);
+    }
+
+    /**
+     * Близость триграмм текста после сдвига к языковой модели (см. NgramModel.fitness).
+     * Просматриваются только ненулевые ячейки гистограммы.
+     */
+    private double trigramScore(int alphabet, NgramModel model, int shift) {
+        int[] histogram = trigrams[alphabet];
+        if (histogram == null) return 0;
+
+        int size = alphabets.get(alphabet).size();
+        int back = size - shift % size;
+        double sum = 0;
+        long count = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            int entry = touched[i];
+            if (entry >>> TOUCHED_SHIFT != alphabet) {
+                continue;
+            }
+            int index = entry & TOUCHED_MASK;
+            int first = (index / (size * size) + back) % size;
+            int second = (index / size % size + back) % size;
+            int third = (index % size + back) % size;
+            sum += histogram[index] * model.logProbability(first, second, third);
+            count += histogram[index];
+        }
+        return count == 0 ? 0 : model.fitness(sum / count);
+    }
+
+    /**
+     * Индекс совпадений (Index of Coincidence).
+     * Сдвиг переставляет буквы, поэтому значение одинаково для всех сдвигов.
+     */
+    public double coincidenceIndex() {
+        if (totalLetters <= 1) return 0;
+
+        double ic = 0;
+        for (int[] counts : letters) {
+            for (int count : counts) {
+                ic += (double) count * (count - 1);
+            }
+        }
+        for (int count : otherLetters.values()) {
+            ic += (double) count * (count - 1);
+        }
+
+        return ic / ((double) totalLetters * (totalLetters - 1));
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * Представление текста, сдвинутого шифром Цезаря, без создания копии:
+ * символы сдвигаются при обращении к ним. Подходит для вариантов
+ * дешифрования, из которых обычно читается только начало.
+ * Полная строка строится методом toString.
+ */
+public final class ShiftedText implements CharSequence {
+
+    private final String text;
+    private final int start;
+    private final int end;
+    private final int shift;
+    private final AlphabetSet alphabets;
+    private final CipherEngine engine;
+
+    /**
+     * Текст, сдвинутый на shift (для дешифрования - отрицательный сдвиг)
+     */
+    public ShiftedText(String text, int shift, AlphabetSet alphabets) {
+        this(text, 0, text.length(), shift, alphabets, CipherEngine.forShift(alphabets, shift));
+    }
+
+    private ShiftedText(String text, int start, int end, int shift, AlphabetSet alphabets, CipherEngine engine) {
+        this.text = text;
+        this.start = start;
+        this.end = end;
+        this.shift = shift;
+        this.alphabets = alphabets;
+        this.engine = engine;
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length());
+        }
+        return engine.map(text.charAt(start + index));
+    }
+
+    /**
+     * Часть текста - тоже представление без копирования
+     */
+    @Override
+    public ShiftedText subSequence(int from, int to) {
+        checkRange(from, to);
+        return new ShiftedText(text, start + from, start + to, shift, alphabets, engine);
+    }
+
+    /**
+     * Копирование сдвинутых символов [from, to) в массив
+     */
+    public void getChars(int from, int to, char[] dst, int dstOffset) {
+        checkRange(from, to);
+        text.getChars(start + from, start + to, dst, dstOffset);
+        engine.apply(dst, dstOffset, dst, dstOffset, to - from);
+    }
+
+    private void checkRange(int from, int to) {
+        if (from < 0 || to > length() || from > to) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of bounds for length "
+                    + length());
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (start == 0 && end == text.length()) {
+            // Весь текст сдвигается параллельно, как в CaesarCipher
+            return ParallelCipher.apply(text, alphabets, shift);
+        }
+        char[] chars = new char[length()];
+        getChars(0, length(), chars, 0);
+        return new String(chars);
+    }
+}
@@ -0,0 +1,318 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Потоковый подбор сдвига для большого количества коротких сообщений.
+ * Вход делится на записи (по умолчанию - строки), записи группируются в пакеты,
+ * которые обрабатываются в пуле потоков. Каждый поток использует свой
+ * ShiftScorer и буферы, очищаемые между записями, а результаты пишутся
+ * в порядке записей во входе.
+ *
+ * Формат результата для каждой записи: сдвиг, язык, оценка и расшифрованный
+ * текст, разделенные табуляцией. С группировкой RotationClusters записи,
+ * совпадающие с точностью до сдвига, анализируются один раз на группу.
+ */
+public final class StreamingCracker {
+
+    // Количество записей в одном пакете
+    private static final int BATCH_SIZE = 1024;
+
+    // Размер буфера чтения
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Буферы рабочего потока, переиспользуемые между записями
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private StreamingCracker() {
+    }
+
+    /**
+     * Подбор сдвига для одной записи с буферами текущего потока
+     */
+    public static Result crack(CharSequence record) {
+        return crack(record, SCRATCH.get());
+    }
+
+    private static Result crack(CharSequence record, Scratch scratch) {
+        // Повторяющиеся записи берутся из кэша результатов, если он включен
+        ShiftCache cache = Analyzer.resultCache();
+        if (cache != null) {
+            ShiftCache.Ranking ranking = cache.get(record.toString(), AlphabetSet.DEFAULT, text -> {
+                score(text, scratch);
+                int count = scratch.scorer.shiftCount(scratch.scorer.language());
+                return new ShiftCache.Ranking(scratch.scorer.language(), AlphabetSet.DEFAULT,
+                        Arrays.copyOf(scratch.scores, count));
+            });
+            int shift = ranking.bestShift();
+            return new Result(shift, ranking.language, shift == 0 ? 0 : ranking.score(shift));
+        }
+
+        String language = score(record, scratch);
+        int count = scratch.scorer.shiftCount(language);
+
+        // Выбор сдвига совпадает с Analyzer.findBestShift
+        int shift = Analyzer.bestShift(scratch.scores, count);
+        return new Result(shift, language, shift == 0 ? 0 : scratch.scores[shift]);
+    }
+
+    /**
+     * Оценка всех сдвигов записи в буфер потока; возвращает язык записи
+     */
+    private static String score(CharSequence record, Scratch scratch) {
+        ShiftScorer scorer = scratch.scorer;
+        scorer.reset();
+        scorer.accept(record, 0, record.length());
+        String language = scorer.language();
+        int count = scorer.shiftCount(language);
+        scorer.scores(language, scratch.scores, count);
+        return language;
+    }
+
+    /**
+     * Обработка строк входа в threads потоках; возвращает количество записей
+     */
+    public static long crack(Reader in, Writer out, int threads) throws IOException {
+        return crack(in, out, '\n', threads);
+    }
+
+    /**
+     * Обработка записей, разделенных символом delimiter, в threads потоках.
+     * Результаты разделяются тем же символом. Возвращает количество записей.
+     */
+    public static long crack(Reader in, Writer out, char delimiter, int threads) throws IOException {
+        return crack(in, out, delimiter, threads, null);
+    }
+
+    /**
+     * Обработка записей с группировкой сдвинутых копий: сдвиг каждой группы
+     * подбирается один раз (clusters может быть null - без группировки)
+     */
+    public static long crack(Reader in, Writer out, char delimiter, int threads, RotationClusters clusters)
+            throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threads);
+        }
+        RecordReader records = new RecordReader(in, delimiter);
+        if (threads == 1) {
+            return crackSequential(records, out, delimiter, clusters);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "cracker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Ограничение числа пакетов в работе, чтобы не читать весь вход в память
+        int maxInFlight = threads * 4;
+        ArrayDeque<Future<StringBuilder>> pending = new ArrayDeque<>();
+        long count = 0;
+        try {
+            String[] batch;
+            while ((batch = records.readBatch(BATCH_SIZE)) != null) {
+                count += batch.length;
+                String[] task = batch;
+                pending.add(executor.submit(() -> format(task, delimiter, clusters)));
+                if (pending.size() >= maxInFlight) {
+                    out.append(await(pending.poll()));
+                }
+            }
+            while (!pending.isEmpty()) {
+                out.append(await(pending.poll()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        out.flush();
+        return count;
+    }
+
+    private static long crackSequential(RecordReader records, Writer out, char delimiter, RotationClusters clusters)
+            throws IOException {
+        long count = 0;
+        String[] batch;
+        while ((batch = records.readBatch(BATCH_SIZE)) != null) {
+            count += batch.length;
+            out.append(format(batch, delimiter, clusters));
+        }
+        out.flush();
+        return count;
+    }
+
+    /**
+     * Обработка пакета записей в текущем потоке
+     */
+    private static StringBuilder format(String[] batch, char delimiter, RotationClusters clusters) {
+        Scratch scratch = SCRATCH.get();
+        StringBuilder output = scratch.output;
+        output.setLength(0);
+        for (String record : batch) {
+            if (clusters != null) {
+                // Сдвиг группы; в смешанном тексте у алфавитов могут быть разные сдвиги
+                RotationClusters.Result result = clusters.crack(record);
+                output.append(result.shift).append('\t')
+                      .append(result.language).append('\t');
+                appendScore(output, result.shift == 0 ? 0 : result.score);
+                output.append('\t').append(result.decrypt(record)).append(delimiter);
+                continue;
+            }
+            Result result = crack(record, scratch);
+            output.append(result.shift).append('\t')
+                  .append(result.language).append('\t');
+            appendScore(output, result.score);
+            output.append('\t');
+
+            // Дешифрование в буфер потока без промежуточной строки
+            char[] chars = scratch.chars(record.length());
+            record.getChars(0, record.length(), chars, 0);
+            CipherEngine.forShift(-result.shift).apply(chars, 0, chars, 0, record.length());
+            output.append(chars, 0, record.length()).append(delimiter);
+        }
+        // Копия, так как буфер потока будет использован для следующего пакета
+        return new StringBuilder(output);
+    }
+
+    /**
+     * Оценка с четырьмя знаками после точки без String.format
+     */
+    private static void appendScore(StringBuilder output, double score) {
+        long scaled = Math.round(score * 10000);
+        output.append(scaled / 10000).append('.');
+        long fraction = scaled % 10000;
+        for (long digit = 1000; digit > fraction && digit > 1; digit /= 10) {
+            output.append('0');
+        }
+        output.append(fraction);
+    }
+
+    private static StringBuilder await(Future<StringBuilder> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while cracking records");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Буферы одного рабочего потока
+     */
+    private static class Scratch {
+        final ShiftScorer scorer = new ShiftScorer();
+        // Размер алфавита ограничен Byte.MAX_VALUE (см. Alphabet)
+        final double[] scores = new double[Byte.MAX_VALUE];
+        final StringBuilder output = new StringBuilder(BUFFER_SIZE);
+        private char[] chars = new char[256];
+
+        char[] chars(int length) {
+            if (chars.length < length) {
+                chars = new char[Math.max(length, chars.length * 2)];
+            }
+            return chars;
+        }
+    }
+
+    /**
+     * Чтение записей, разделенных символом; при разделителе '\n'
+     * завершающий '\r' отбрасывается, как в BufferedReader.readLine
+     */
+    private static class RecordReader {
+        private final Reader in;
+        private final char delimiter;
+        private final char[] buffer = new char[BUFFER_SIZE];
+        private final StringBuilder record = new StringBuilder();
+        private int position;
+        private int limit;
+        private boolean eof;
+
+        RecordReader(Reader in, char delimiter) {
+            this.in = in;
+            this.delimiter = delimiter;
+        }
+
+        /**
+         * Следующие записи (не больше max) или null в конце входа
+         */
+        String[] readBatch(int max) throws IOException {
+            String[] batch = new String[max];
+            int size = 0;
+            String next;
+            while (size < max && (next = readRecord()) != null) {
+                batch[size++] = next;
+            }
+            return size == 0 ? null : size == max ? batch : Arrays.copyOf(batch, size);
+        }
+
+        private String readRecord() throws IOException {
+            record.setLength(0);
+            while (true) {
+                if (position == limit) {
+                    if (eof || !fill()) {
+                        return record.length() > 0 ? finish() : null;
+                    }
+                }
+                int start = position;
+                while (position < limit && buffer[position] != delimiter) {
+                    position++;
+                }
+                record.append(buffer, start, position - start);
+                if (position < limit) {
+                    position++;
+                    return finish();
+                }
+            }
+        }
+
+        private boolean fill() throws IOException {
+            int read = in.read(buffer);
+            if (read <= 0) {
+                eof = true;
+                return false;
+            }
+            position = 0;
+            limit = read;
+            return true;
+        }
+
+        private String finish() {
+            int length = record.length();
+            if (delimiter == '\n' && length > 0 && record.charAt(length - 1) == '\r') {
+                length--;
+            }
+            return record.substring(0, length);
+        }
+    }
+
+    /**
+     * Результат подбора сдвига для одной записи
+     */
+    public static class Result {
+        public final int shift;
+        public final String language;
+        public final double score;
+
+        public Result(int shift, String language, double score) {
+            this.shift = shift;
+            this.language = language;
+            this.score = score;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Shift: %d, Language: %s, Score: %.4f", shift, language, score);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/**
+ * Шифр Виженера: буквы сдвигаются по очереди сдвигами ключа.
+ * Позиция в ключе переходит к следующей только на буквах кольца сдвига
+ * (см. Alphabet); прочие символы и дополнительные буквы не меняются.
+ *
+ * Ключ задается буквами любого алфавита набора (номер буквы - сдвиг)
+ * или массивом сдвигов. Каждой позиции ключа соответствует готовый
+ * CipherEngine, поэтому обработка символа - поиск кода и чтение из таблицы.
+ */
+public final class VigenereCipher {
+
+    private final AlphabetSet alphabets;
+    private final CipherEngine[] engines;
+    private final int[] ringSizes;
+    private int position;
+
+    private VigenereCipher(AlphabetSet alphabets, int[] shifts) {
+        if (shifts.length == 0) {
+            throw new IllegalArgumentException("Key is empty");
+        }
+        this.alphabets = alphabets;
+        this.engines = new CipherEngine[shifts.length];
+        for (int i = 0; i < shifts.length; i++) {
+            engines[i] = CipherEngine.forShift(alphabets, shifts[i]);
+        }
+        this.ringSizes = new int[alphabets.size()];
+        for (int a = 0; a < alphabets.size(); a++) {
+            ringSizes[a] = alphabets.get(a).size();
+        }
+    }
+
+    /**
+     * Шифрование текста ключом (английский и русский алфавиты)
+     */
+    public static String encrypt(String text, String key) {
+        return encrypt(text, key, AlphabetSet.DEFAULT);
+    }
+
+    /**
+     * Дешифрование текста ключом (английский и русский алфавиты)
+     */
+    public static String decrypt(String text, String key) {
+        return decrypt(text, key, AlphabetSet.DEFAULT);
+    }
+
+    /**
+     * Шифрование текста ключом для заданного набора алфавитов
+     */
+    public static String encrypt(String text, String key, AlphabetSet alphabets) {
+        return encrypt(text, keyShifts(key, alphabets), alphabets);
+    }
+
+    /**
+     * Дешифрование текста ключом для заданного набора алфавитов
+     */
+    public static String decrypt(String text, String key, AlphabetSet alphabets) {
+        return decrypt(text, keyShifts(key, alphabets), alphabets);
+    }
+
+    /**
+     * Шифрование текста последовательностью сдвигов
+     */
+    public static String encrypt(String text, int[] shifts, AlphabetSet alphabets) {
+        return encryptor(shifts, alphabets).apply(text);
+    }
+
+    /**
+     * Дешифрование текста последовательностью сдвигов
+     */
+    public static String decrypt(String text, int[] shifts, AlphabetSet alphabets) {
+        return decryptor(shifts, alphabets).apply(text);
+    }
+
+    /**
+     * Шифратор для потоковой обработки: позиция в ключе сохраняется между вызовами apply
+     */
+    public static VigenereCipher encryptor(int[] shifts, AlphabetSet alphabets) {
+        return new VigenereCipher(alphabets, shifts);
+    }
+
+    /**
+     * Дешифратор для потоковой обработки: позиция в ключе сохраняется между вызовами apply
+     */
+    public static VigenereCipher decryptor(int[] shifts, AlphabetSet alphabets) {
+        int[] negated = new int[shifts.length];
+        for (int i = 0; i < shifts.length; i++) {
+            negated[i] = -shifts[i];
+        }
+        return new VigenereCipher(alphabets, negated);
+    }
+
+    /**
+     * Сдвиги ключа: номер каждой буквы ключа в ее алфавите.
+     * Символы ключа вне кольца сдвига не допускаются.
+     */
+    public static int[] keyShifts(String key, AlphabetSet alphabets) {
+        if (key.isEmpty()) {
+            throw new IllegalArgumentException("Key is empty");
+        }
+        int[] shifts = new int[key.length()];
+        for (int i = 0; i < key.length(); i++) {
+            int code = alphabets.code(key.charAt(i));
+            int letter = code & AlphabetSet.LETTER_MASK;
+            if (code < 0 || letter >= alphabets.get(code >>> AlphabetSet.CODE_SHIFT).size()) {
+                throw new IllegalArgumentException("Invalid key character: '" + key.charAt(i) + "'");
+            }
+            shifts[i] = letter;
+        }
+        return shifts;
+    }
+
+    /**
+     * Обработка строки с текущей позиции ключа
+     */
+    public String apply(String text) {
+        char[] chars = text.toCharArray();
+        apply(chars, 0, chars, 0, chars.length);
+        return new String(chars);
+    }
+
+    /**
+     * Обработка массива в переданный буфер с текущей позиции ключа.
+     * Исходный и результирующий массивы могут совпадать.
+     */
+    public void apply(char[] src, int srcOffset, char[] dst, int dstOffset, int length) {
+        int position = this.position;
+        for (int i = 0; i < length; i++) {
+            char c = src[srcOffset + i];
+            int code = alphabets.code(c);
+            if (code >= 0 && (code & AlphabetSet.LETTER_MASK) < ringSizes[code >>> AlphabetSet.CODE_SHIFT]) {
+                c = engines[position].map(c);
+                if (++position == engines.length) {
+                    position = 0;
+                }
+            }
+            dst[dstOffset + i] = c;
+        }
+        this.position = position;
+    }
+
+    /**
+     * Текущая позиция в ключе
+     */
+    public int position() {
+        return position;
+    }
+
+    /**
+     * Демонстрация работы класса
+     */
+    public static void main(String[] args) {
+        String text = "The quick brown fox jumps over the lazy dog while the cat sleeps in the warm sun. "
+                + "Every morning the farmer walks across the field to check on his animals and crops. "
+                + "Съешь же ещё этих мягких французских булок, да выпей чаю.";
+        String key = "lemon";
+
+        String encrypted = encrypt(text, key);
+        System.out.println("Key: " + key);
+        System.out.println("Encrypted: " + encrypted);
+        System.out.println("Decrypted: " + decrypt(encrypted, key));
+
+        VigenereCracker.Result result = VigenereCracker.crack(encrypted);
+        System.out.println("Cracked: " + result);
+        System.out.println("Text: " + result.decrypt(encrypted));
+    }
+}
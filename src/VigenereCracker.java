@@ -0,0 +1,264 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Подбор ключа шифра Виженера.
+ * Буквы кольца сдвига выбираются из текста за один проход. Длина ключа
+ * оценивается по среднему индексу совпадений столбцов (буквы с одинаковой
+ * позицией в ключе): при верной длине каждый столбец зашифрован одним
+ * сдвигом и его индекс близок к индексу языка. Затем каждый столбец
+ * решается как шифр Цезаря оценкой ShiftScorer. Длины ключа и столбцы
+ * обрабатываются параллельно.
+ */
+public final class VigenereCracker {
+
+    // Наибольшая проверяемая длина ключа по умолчанию
+    public static final int DEFAULT_MAX_KEY_LENGTH = 20;
+
+    // Для оценки длины ключа достаточно начала текста
+    private static final int KEY_LENGTH_SAMPLE = 1 << 20;
+
+    // Минимальное количество букв в столбце для проверяемой длины
+    private static final int MIN_COLUMN_LETTERS = 20;
+
+    // Доля отрыва индекса совпадений от случайного, при которой длина считается верной
+    private static final double KEY_LENGTH_THRESHOLD = 0.85;
+
+    // Для текстов не длиннее этого ключ уточняется по триграммам
+    private static final int REFINE_LIMIT = 16 * 1024;
+
+    private VigenereCracker() {
+    }
+
+    /**
+     * Подбор ключа для английского и русского алфавитов
+     */
+    public static Result crack(String ciphertext) {
+        return crack(ciphertext, AlphabetSet.DEFAULT, DEFAULT_MAX_KEY_LENGTH);
+    }
+
+    /**
+     * Подбор ключа длиной не больше maxKeyLength для заданного набора алфавитов.
+     * Сдвиги ключа определяются по преобладающему алфавиту.
+     */
+    public static Result crack(String ciphertext, AlphabetSet alphabets, int maxKeyLength) {
+        return crack(ciphertext, alphabets, maxKeyLength, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Подбор ключа с вычислениями в заданном Executor
+     */
+    public static Result crack(String ciphertext, AlphabetSet alphabets, int maxKeyLength, Executor executor) {
+        if (maxKeyLength < 1) {
+            throw new IllegalArgumentException("Invalid maximum key length: " + maxKeyLength);
+        }
+
+        // Буквы кольца сдвига всех алфавитов в порядке текста - по ним идет позиция ключа
+        char[] letters = new char[ciphertext.length()];
+        int count = 0;
+        long[] alphabetCounts = new long[alphabets.size()];
+        for (int i = 0; i < ciphertext.length(); i++) {
+            char c = ciphertext.charAt(i);
+            int code = alphabets.code(c);
+            if (code < 0) {
+                continue;
+            }
+            int alphabet = code >>> AlphabetSet.CODE_SHIFT;
+            if ((code & AlphabetSet.LETTER_MASK) < alphabets.get(alphabet).size()) {
+                letters[count++] = c;
+                alphabetCounts[alphabet]++;
+            }
+        }
+
+        int dominant = 0;
+        for (int a = 1; a < alphabetCounts.length; a++) {
+            if (alphabetCounts[a] > alphabetCounts[dominant]) {
+                dominant = a;
+            }
+        }
+        Alphabet alphabet = alphabets.get(dominant);
+        if (alphabetCounts[dominant] == 0) {
+            return new Result(new int[] {0}, alphabet, 0, alphabets);
+        }
+
+        // Номера букв преобладающего алфавита в выборке (-1 для других алфавитов)
+        int sampleLength = Math.min(count, KEY_LENGTH_SAMPLE);
+        byte[] sample = new byte[sampleLength];
+        for (int i = 0; i < sampleLength; i++) {
+            int code = alphabets.code(letters[i]);
+            sample[i] = (byte) (code >>> AlphabetSet.CODE_SHIFT == dominant ? code & AlphabetSet.LETTER_MASK : -1);
+        }
+
+        int lengths = (int) Math.max(1, Math.min(maxKeyLength, alphabetCounts[dominant] / MIN_COLUMN_LETTERS));
+        CompletableFuture<?>[] coincidenceTasks = new CompletableFuture<?>[lengths];
+        double[] coincidences = new double[lengths + 1];
+        for (int length = 1; length <= lengths; length++) {
+            int keyLength = length;
+            coincidenceTasks[length - 1] = CompletableFuture.runAsync(() ->
+                    coincidences[keyLength] = columnCoincidence(sample, keyLength, alphabet.size()), executor);
+        }
+        CompletableFuture.allOf(coincidenceTasks).join();
+        int keyLength = chooseKeyLength(coincidences, alphabet.size());
+
+        // Каждый столбец решается как шифр Цезаря; буквы подаются без триграмм
+        char[] text = letters;
+        int total = count;
+        String language = alphabet.name();
+        int[] shifts = new int[keyLength];
+        CompletableFuture<?>[] columnTasks = new CompletableFuture<?>[keyLength];
+        for (int column = 0; column < keyLength; column++) {
+            int start = column;
+            columnTasks[column] = CompletableFuture.runAsync(() -> {
+                ShiftScorer scorer = new ShiftScorer(alphabets);
+                for (int i = start; i < total; i += keyLength) {
+                    scorer.acceptChar(text[i]);
+                    scorer.breakRun();
+                }
+                double[] scores = scorer.scores(language, scorer.shiftCount(language));
+                int best = 0;
+                for (int shift = 1; shift < scores.length; shift++) {
+                    if (scores[shift] > scores[best]) {
+                        best = shift;
+                    }
+                }
+                shifts[start] = best;
+            }, executor);
+        }
+        CompletableFuture.allOf(columnTasks).join();
+
+        NgramModel model = NgramModel.forAlphabet(alphabet);
+        if (model != null && ciphertext.length() <= REFINE_LIMIT) {
+            refine(ciphertext, shifts, alphabets, model);
+        }
+        return new Result(shifts, alphabet, coincidences[keyLength], alphabets);
+    }
+
+    /**
+     * Уточнение ключа по триграммам: в коротком тексте частоты букв столбца
+     * ненадежны, поэтому сдвиг каждой позиции ключа перебирается при
+     * остальных фиксированных, пока средний логарифм вероятности растет
+     */
+    private static void refine(String ciphertext, int[] shifts, AlphabetSet alphabets, NgramModel model) {
+        double best = fitness(ciphertext, shifts, alphabets, model);
+        boolean improved = true;
+        for (int round = 0; round < 3 && improved; round++) {
+            improved = false;
+            for (int position = 0; position < shifts.length; position++) {
+                int current = shifts[position];
+                for (int shift = 0; shift < model.alphabet().size(); shift++) {
+                    if (shift == current) {
+                        continue;
+                    }
+                    shifts[position] = shift;
+                    double fitness = fitness(ciphertext, shifts, alphabets, model);
+                    if (fitness > best) {
+                        best = fitness;
+                        current = shift;
+                        improved = true;
+                    }
+                }
+                shifts[position] = current;
+            }
+        }
+    }
+
+    private static double fitness(String ciphertext, int[] shifts, AlphabetSet alphabets, NgramModel model) {
+        double average = model.averageLogProbability(VigenereCipher.decrypt(ciphertext, shifts, alphabets));
+        return Double.isNaN(average) ? Double.NEGATIVE_INFINITY : average;
+    }
+
+    /**
+     * Средний индекс совпадений столбцов для заданной длины ключа
+     */
+    private static double columnCoincidence(byte[] sample, int keyLength, int size) {
+        int[][] counts = new int[keyLength][size];
+        for (int i = 0, column = 0; i < sample.length; i++) {
+            if (sample[i] >= 0) {
+                counts[column][sample[i]]++;
+            }
+            if (++column == keyLength) {
+                column = 0;
+            }
+        }
+        double sum = 0;
+        int columns = 0;
+        for (int[] column : counts) {
+            long total = 0;
+            double pairs = 0;
+            for (int count : column) {
+                total += count;
+                pairs += (double) count * (count - 1);
+            }
+            if (total > 1) {
+                sum += pairs / ((double) total * (total - 1));
+                columns++;
+            }
+        }
+        return columns == 0 ? 0 : sum / columns;
+    }
+
+    /**
+     * Наименьшая длина, индекс которой близок к наибольшему.
+     * Кратные верной длине дают такой же индекс, поэтому выбирается наименьшая.
+     */
+    private static int chooseKeyLength(double[] coincidences, int size) {
+        double random = 1.0 / size;
+        double best = random;
+        for (int length = 1; length < coincidences.length; length++) {
+            best = Math.max(best, coincidences[length]);
+        }
+        double threshold = random + KEY_LENGTH_THRESHOLD * (best - random);
+        for (int length = 1; length < coincidences.length; length++) {
+            if (coincidences[length] >= threshold) {
+                return length;
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Найденный ключ
+     */
+    public static class Result {
+        public final String key;
+        public final String language;
+        public final int keyLength;
+        public final double coincidence;
+        private final int[] shifts;
+        private final AlphabetSet alphabets;
+
+        public Result(int[] shifts, Alphabet alphabet, double coincidence, AlphabetSet alphabets) {
+            StringBuilder key = new StringBuilder(shifts.length);
+            for (int shift : shifts) {
+                key.append(alphabet.lower(shift));
+            }
+            this.key = key.toString();
+            this.language = alphabet.name();
+            this.keyLength = shifts.length;
+            this.coincidence = coincidence;
+            this.shifts = shifts.clone();
+            this.alphabets = alphabets;
+        }
+
+        /**
+         * Сдвиги ключа
+         */
+        public int[] shifts() {
+            return shifts.clone();
+        }
+
+        /**
+         * Дешифрование текста найденным ключом
+         */
+        public String decrypt(String ciphertext) {
+            return VigenereCipher.decrypt(ciphertext, shifts, alphabets);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Key \"%s\" (Language: %s, Length: %d, IC: %.4f)",
+                    key, language, keyLength, coincidence);
+        }
+    }
+}